@@ -0,0 +1,20 @@
+package ru.rmntim.language;
+
+public enum Engine {
+    /**
+     * Tree-walking interpreter. This is the reference implementation of the language.
+     */
+    TREE,
+    /**
+     * Bytecode compiler and stack-based virtual machine.
+     */
+    VM,
+    /**
+     * Tree of pre-linked closures, compiled from the resolved AST.
+     */
+    CLOSURE,
+    /**
+     * Walks the resolved program laid out in flat primitive arrays.
+     */
+    FLAT,
+}
@@ -0,0 +1,112 @@
+package ru.rmntim.language;
+
+import ru.rmntim.language.interpreter.statement.Statement;
+import ru.rmntim.language.optimizer.Optimizer;
+import ru.rmntim.language.parser.Declarations;
+import ru.rmntim.language.parser.Parser;
+import ru.rmntim.language.parser.Scanner;
+import ru.rmntim.language.resolver.Resolver;
+import ru.rmntim.language.util.ErrorReporter;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scans, parses, resolves and optimizes sources that are loaded again and again with small changes,
+ * like a script being edited while the process keeps running.
+ * <p>
+ * The source is split at every top-level {@link Declarations declaration}, and each part is looked up
+ * by its text and starting line among the parts of the previous load. Top-level code is resolved
+ * against the global scope, so a part resolves the same no matter what surrounds it, and the statements
+ * built for an unchanged part are reused as they are. Only the parts that changed are processed again.
+ * <p>
+ * When the loads are separate inputs rather than versions of one source, like the lines of a REPL,
+ * parts are kept across loads instead of only the previous one, up to the {@link #KEPT_PARTS} most
+ * recently used.
+ * <p>
+ * Parts that had errors are never kept, so their errors are reported on every load.
+ * The offsets of reused tokens are those of the load that created them.
+ */
+public class IncrementalFrontEnd {
+    private record Part(int line, String text) {
+    }
+
+    // Enough for the declarations someone keeps re-entering in a REPL session
+    private static final int KEPT_PARTS = 64;
+
+    private final boolean optimize;
+    private final boolean accumulate;
+    private Map<Part, List<Statement>> parts;
+
+    /**
+     * @param accumulate whether parts of earlier loads are kept, rather than only those of the previous one
+     */
+    public IncrementalFrontEnd(boolean optimize, boolean accumulate) {
+        this.optimize = optimize;
+        this.accumulate = accumulate;
+        parts = accumulate ? recentlyUsed() : new HashMap<>();
+    }
+
+    private static Map<Part, List<Statement>> recentlyUsed() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Part, List<Statement>> eldest) {
+                return size() > KEPT_PARTS;
+            }
+        };
+    }
+
+    /**
+     * @return statements ready to run, or {@code null} if there were errors
+     */
+    public List<Statement> load(String source) {
+        var loaded = new HashMap<Part, List<Statement>>();
+        var statements = new ArrayList<Statement>();
+        var failed = false;
+
+        for (var span : Declarations.split(source, 0)) {
+            var part = new Part(span.line(), source.substring(span.start(), span.end()));
+            var cached = parts.get(part);
+            if (cached == null) {
+                cached = compile(part, span.start());
+            }
+            if (cached == null) {
+                failed = true;
+                continue;
+            }
+            loaded.put(part, cached);
+            statements.addAll(cached);
+        }
+
+        if (accumulate) {
+            parts.putAll(loaded);
+        } else {
+            // Parts that are gone from the source are dropped
+            parts = loaded;
+        }
+        return failed ? null : statements;
+    }
+
+    private List<Statement> compile(Part part, int offset) {
+        var scanner = new Scanner(new StringReader(part.text()), part.line(), offset);
+        ErrorReporter.startCapture();
+        var statements = new Parser(scanner).parse();
+        var errors = ErrorReporter.stopCapture();
+
+        if (errors.isEmpty()) {
+            ErrorReporter.startCapture();
+            new Resolver().resolve(statements);
+            errors = ErrorReporter.stopCapture();
+        }
+        if (!errors.isEmpty()) {
+            ErrorReporter.replay(errors);
+            return null;
+        }
+
+        return optimize ? new Optimizer().optimize(statements) : statements;
+    }
+}
@@ -1,52 +1,207 @@
 package ru.rmntim.language;
 
+import ru.rmntim.language.cache.ScriptCache;
+import ru.rmntim.language.closure.ClosureEngine;
+import ru.rmntim.language.flat.FlatEngine;
 import ru.rmntim.language.interpreter.Interpreter;
+import ru.rmntim.language.interpreter.statement.Statement;
+import ru.rmntim.language.optimizer.Optimizer;
+import ru.rmntim.language.parser.ParallelParser;
 import ru.rmntim.language.parser.Parser;
 import ru.rmntim.language.parser.Scanner;
 import ru.rmntim.language.resolver.Resolver;
 import ru.rmntim.language.util.ErrorReporter;
+import ru.rmntim.language.util.MappedFileReader;
+import ru.rmntim.language.util.Output;
+import ru.rmntim.language.vm.VirtualMachine;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
+    private static final long WATCH_INTERVAL_MILLIS = 200;
+
     private static final Interpreter interpreter = new Interpreter();
+    private static Engine engine = Engine.TREE;
+    private static boolean optimize = true;
+    private static int parseThreads = 1;
+    private static boolean watch = false;
+    private static Path cacheDirectory = null;
+    private static VirtualMachine vm = null;
+    private static ClosureEngine closureEngine = null;
+    private static FlatEngine flatEngine = null;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String path = null;
+        for (var arg : args) {
+            if (arg.startsWith("--engine=")) {
+                engine = parseEngine(arg.substring("--engine=".length()));
+            } else if (arg.startsWith("--parse-threads=")) {
+                parseThreads = parseThreads(arg.substring("--parse-threads=".length()));
+            } else if (arg.startsWith("--output-buffer=")) {
+                Output.setBufferSize(parseSize(arg.substring("--output-buffer=".length())));
+            } else if (arg.startsWith("--cache-dir=")) {
+                cacheDirectory = Paths.get(arg.substring("--cache-dir=".length()));
+            } else if (arg.equals("--watch")) {
+                watch = true;
+            } else if (arg.equals("-O0") || arg.equals("-O1")) {
+                optimize = arg.equals("-O1");
+            } else if (arg.startsWith("-") || path != null) {
+                usage();
+            } else {
+                path = arg;
+            }
+        }
+
+        switch (engine) {
+            case VM -> vm = new VirtualMachine();
+            case CLOSURE -> closureEngine = new ClosureEngine();
+            case FLAT -> flatEngine = new FlatEngine();
+            default -> {
+            }
+        }
+
+        try {
+            if (path != null && watch) {
+                watchFile(path);
+            } else if (path != null) {
+                runFile(path);
+            } else {
+                runRepl();
+            }
+        } finally {
+            Output.flush();
+        }
+    }
 
-    public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.err.println("Usage: lox [FILENAME]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
-        } else {
-            runRepl();
+    private static Engine parseEngine(String name) {
+        for (var value : Engine.values()) {
+            if (value.name().equalsIgnoreCase(name)) {
+                return value;
+            }
+        }
+        usage();
+        return null;
+    }
+
+    private static int parseThreads(String value) {
+        try {
+            var threads = Integer.parseInt(value);
+            if (threads > 0) {
+                return threads;
+            }
+        } catch (NumberFormatException ignored) {
         }
+        usage();
+        return 1;
+    }
+
+    // A number of bytes, optionally followed by K or M
+    private static int parseSize(String value) {
+        var unit = 1;
+        if (value.endsWith("K") || value.endsWith("k")) {
+            unit = 1024;
+        } else if (value.endsWith("M") || value.endsWith("m")) {
+            unit = 1024 * 1024;
+        }
+        try {
+            var size = Integer.parseInt(unit == 1 ? value : value.substring(0, value.length() - 1));
+            if (size >= 0 && size <= Integer.MAX_VALUE / unit) {
+                return size * unit;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        usage();
+        return 0;
+    }
+
+    private static void usage() {
+        System.err.println("Usage: lox [--engine=tree|vm|closure|flat] [-O0|-O1] [--parse-threads=N]"
+                + " [--output-buffer=SIZE] [--cache-dir=DIR] [--watch] [FILENAME]");
+        System.exit(64);
     }
 
     private static void runRepl() throws IOException {
         var inputReader = new InputStreamReader(System.in);
         var reader = new BufferedReader(inputReader);
+        // Lines that were entered before, like a redefined function, aren't parsed again
+        var frontEnd = new IncrementalFrontEnd(optimize, true);
 
         for (; ; ) {
+            Output.flush();
             System.out.print("> ");
             var line = reader.readLine();
             if (line == null) {
                 break;
             }
-            run(line);
+            var statements = frontEnd.load(line);
+            if (statements != null) {
+                execute(statements);
+            }
             ErrorReporter.errorState = false;
         }
     }
 
+    /**
+     * Runs the file, and then runs it again every time it changes. Only the declarations
+     * that changed are parsed again.
+     */
+    private static void watchFile(String path) throws IOException, InterruptedException {
+        var file = Paths.get(path);
+        var frontEnd = new IncrementalFrontEnd(optimize, false);
+        FileTime loaded = null;
+        for (; ; ) {
+            var modified = Files.getLastModifiedTime(file);
+            if (!modified.equals(loaded)) {
+                loaded = modified;
+                var statements = frontEnd.load(new String(Files.readAllBytes(file), Charset.defaultCharset()));
+                if (statements != null) {
+                    execute(statements);
+                }
+                Output.flush();
+                ErrorReporter.errorState = false;
+                ErrorReporter.runtimeErrorState = false;
+            }
+            Thread.sleep(WATCH_INTERVAL_MILLIS);
+        }
+    }
 
     private static void runFile(String path) throws IOException {
-        var bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        var file = Paths.get(path);
+        var cache = cacheDirectory == null ? null : new ScriptCache(cacheDirectory);
+        // With a cache, the bytes that are hashed are the very bytes that are parsed
+        var bytes = cache == null ? null : Files.readAllBytes(file);
+        var key = cache == null ? null : cache.key(bytes);
+        var statements = cache == null ? null : cache.load(key);
 
+        if (statements == null) {
+            statements = bytes == null ? parse(file) : parse(new String(bytes, Charset.defaultCharset()));
+            // Stop if there was a syntax error
+            if (!ErrorReporter.errorState) {
+                new Resolver().resolve(statements);
+            }
+            if (!ErrorReporter.errorState && cache != null) {
+                cache.store(key, statements);
+            }
+        }
+
+        //  Stop on syntax or resolution error
+        if (!ErrorReporter.errorState) {
+            if (optimize) {
+                statements = new Optimizer().optimize(statements);
+            }
+            execute(statements);
+        }
+
+        Output.flush();
         if (ErrorReporter.errorState) {
             System.exit(65);
         }
@@ -55,25 +210,33 @@ public class Main {
         }
     }
 
-    private static void run(String source) {
-        var scanner = new Scanner(source);
-        var tokens = scanner.scanTokens();
-        var parser = new Parser(tokens);
-        var statements = parser.parse();
-        var resolver = new Resolver(interpreter);
-
-        // Stop if there was a syntax error
-        if (ErrorReporter.errorState) {
-            return;
+    private static List<Statement> parse(Path file) throws IOException {
+        if (parseThreads > 1) {
+            // Chunks are split off the whole text, so it's read at once
+            return parse(new String(Files.readAllBytes(file), Charset.defaultCharset()));
         }
 
-        resolver.resolve(statements);
+        // The scanner decodes the mapped file as the parser asks for tokens
+        try (var source = new MappedFileReader(file, Charset.defaultCharset())) {
+            return new Parser(new Scanner(source)).parse();
+        }
+    }
 
-        //  Stop on resolution error
-        if (ErrorReporter.errorState) {
-            return;
+    private static List<Statement> parse(String source) {
+        if (parseThreads > 1) {
+            try (var pool = new ForkJoinPool(parseThreads)) {
+                return new ParallelParser(source, pool).parse();
+            }
         }
+        return new Parser(new Scanner(source)).parse();
+    }
 
-        interpreter.interpret(statements);
+    private static void execute(List<Statement> statements) {
+        switch (engine) {
+            case TREE -> interpreter.interpret(statements);
+            case VM -> vm.interpret(statements);
+            case CLOSURE -> closureEngine.interpret(statements);
+            case FLAT -> flatEngine.interpret(statements);
+        }
     }
 }
\ No newline at end of file
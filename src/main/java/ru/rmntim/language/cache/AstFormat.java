@@ -0,0 +1,61 @@
+package ru.rmntim.language.cache;
+
+/**
+ * Layout of a cached program. All numbers are big-endian.
+ * <pre>
+ * file      := MAGIC VERSION checksum payload
+ * payload   := symbols statement-count statement*
+ * symbols   := count string*
+ * string    := byte-length utf8-bytes
+ * token     := type-ordinal symbol-index-or-minus-one value line offset
+ * value     := NIL | TRUE | FALSE | NUMBER double | STRING string
+ * node      := NULL | tag fields...
+ * slot      := depth index, where a depth of -1 means a global
+ * checksum  := CRC32C of the payload
+ * </pre>
+ * Nodes are written in the order of their constructor arguments, lists as a count and their elements. Variables, assignments, `self` and `super`
+ * are followed by their slot, and calls by whether they are in tail position.
+ */
+final class AstFormat {
+    static final int MAGIC = 0x4c4f5843; // "LOXC"
+    // Bumped whenever the layout or the meaning of the tree changes
+    static final int VERSION = 3;
+
+    static final byte NULL = 0;
+
+    static final byte BINARY = 1;
+    static final byte UNARY = 2;
+    static final byte GROUPING = 3;
+    static final byte LITERAL = 4;
+    static final byte VARIABLE = 5;
+    static final byte ASSIGNMENT = 6;
+    static final byte TERNARY = 7;
+    static final byte LOGICAL = 8;
+    static final byte CALL = 9;
+    static final byte GET = 10;
+    static final byte SET = 11;
+    static final byte SELF = 12;
+    static final byte SUPER = 13;
+    static final byte ARRAY = 14;
+    static final byte GET_INDEX = 15;
+    static final byte SET_INDEX = 16;
+
+    static final byte EXPR = 20;
+    static final byte LET = 21;
+    static final byte BLOCK = 22;
+    static final byte IF = 23;
+    static final byte WHILE = 24;
+    static final byte BREAK = 25;
+    static final byte FUNCTION = 26;
+    static final byte RETURN = 27;
+    static final byte CLASS = 28;
+
+    static final byte NIL_VALUE = 0;
+    static final byte TRUE_VALUE = 1;
+    static final byte FALSE_VALUE = 2;
+    static final byte NUMBER_VALUE = 3;
+    static final byte STRING_VALUE = 4;
+
+    private AstFormat() {
+    }
+}
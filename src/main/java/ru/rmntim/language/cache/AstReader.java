@@ -0,0 +1,236 @@
+package ru.rmntim.language.cache;
+
+import ru.rmntim.language.env.Slot;
+import ru.rmntim.language.interpreter.expression.*;
+import ru.rmntim.language.interpreter.statement.Class;
+import ru.rmntim.language.interpreter.statement.*;
+import ru.rmntim.language.token.Symbols;
+import ru.rmntim.language.token.Token;
+import ru.rmntim.language.token.TokenType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import static ru.rmntim.language.cache.AstFormat.*;
+
+/**
+ * Rebuilds statements written by {@link AstWriter}, resolved as they were when written.
+ * <p>
+ * The payload is checked against its checksum before anything is built, and nodes are still checked
+ * to be of the kind their parent expects, so malformed input makes it throw {@link CorruptCacheException}
+ * or a {@link java.nio.BufferUnderflowException} rather than build a tree the engines can't run.
+ */
+final class AstReader {
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private final ByteBuffer in;
+    private int[] symbols;
+
+    AstReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    List<Statement> read() {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new CorruptCacheException("Unknown format");
+        }
+        var expected = in.getInt();
+        var checksum = new CRC32C();
+        checksum.update(in.slice());
+        if ((int) checksum.getValue() != expected) {
+            throw new CorruptCacheException("Checksum mismatch");
+        }
+        symbols = new int[count()];
+        for (int i = 0; i < symbols.length; ++i) {
+            symbols[i] = Symbols.intern(readString());
+        }
+
+        var statements = readStatements();
+        if (in.hasRemaining()) {
+            throw new CorruptCacheException("Trailing data");
+        }
+        return statements;
+    }
+
+    private List<Statement> readStatements() {
+        var count = count();
+        var statements = new ArrayList<Statement>(count);
+        for (int i = 0; i < count; ++i) {
+            statements.add(readStatement());
+        }
+        return statements;
+    }
+
+    private Statement readStatement() {
+        var statement = readOptionalStatement();
+        if (statement == null) {
+            throw new CorruptCacheException("Statement expected");
+        }
+        return statement;
+    }
+
+    private Statement readOptionalStatement() {
+        var tag = in.get();
+        return switch (tag) {
+            case NULL -> null;
+            case EXPR -> new Expr(readExpression());
+            case LET -> new Let(readName(), readOptionalExpression());
+            case BLOCK -> new Block(readStatements());
+            case IF -> new If(readExpression(), readStatement(), readOptionalStatement());
+            case WHILE -> new While(readExpression(), readStatement());
+            case BREAK -> new Break(readToken());
+            case FUNCTION -> readFunction();
+            case RETURN -> new Return(readToken(), readOptionalExpression());
+            case CLASS -> {
+                var name = readName();
+                var superclass = readOptionalExpression();
+                if (superclass != null && !(superclass instanceof Variable)) {
+                    throw new CorruptCacheException("Superclass expected");
+                }
+                var count = count();
+                var methods = new ArrayList<Function>(count);
+                for (int i = 0; i < count; ++i) {
+                    if (!(readStatement() instanceof Function method)) {
+                        throw new CorruptCacheException("Method expected");
+                    }
+                    methods.add(method);
+                }
+                yield new Class(name, (Variable) superclass, methods);
+            }
+            default -> throw new CorruptCacheException("Unknown statement " + tag);
+        };
+    }
+
+    private Function readFunction() {
+        var name = readName();
+        var count = count();
+        var params = new ArrayList<Token>(count);
+        for (int i = 0; i < count; ++i) {
+            params.add(readName());
+        }
+        return new Function(name, params, readStatements());
+    }
+
+    private Expression readExpression() {
+        var expression = readOptionalExpression();
+        if (expression == null) {
+            throw new CorruptCacheException("Expression expected");
+        }
+        return expression;
+    }
+
+    private Expression readOptionalExpression() {
+        var tag = in.get();
+        return switch (tag) {
+            case NULL -> null;
+            case BINARY -> new Binary(readExpression(), readToken(), readExpression());
+            case UNARY -> new Unary(readToken(), readExpression());
+            case GROUPING -> new Grouping(readExpression());
+            case LITERAL -> new Literal(readValue());
+            case VARIABLE -> resolved(new Variable(readName()));
+            case ASSIGNMENT -> resolved(new Assignment(readName(), readExpression()));
+            case TERNARY -> new Ternary(readExpression(), readExpression(), readExpression());
+            case LOGICAL -> new Logical(readExpression(), readToken(), readExpression());
+            case CALL -> {
+                var callee = readExpression();
+                var paren = readToken();
+                var call = new Call(callee, paren, readExpressions());
+                if (in.get() != 0) {
+                    call.markTailCall();
+                }
+                yield call;
+            }
+            case ARRAY -> new ArrayLiteral(readExpressions());
+            case GET -> new Get(readExpression(), readName());
+            case SET -> new Set(readExpression(), readName(), readExpression());
+            case SELF -> resolved(new Self(readToken()));
+            case SUPER -> resolved(new Super(readToken(), readName()));
+            case GET_INDEX -> new GetIndex(readExpression(), readToken(), readExpression());
+            case SET_INDEX -> new SetIndex(readExpression(), readToken(), readExpression(), readExpression());
+            default -> throw new CorruptCacheException("Unknown expression " + tag);
+        };
+    }
+
+    private List<Expression> readExpressions() {
+        var count = count();
+        var expressions = new ArrayList<Expression>(count);
+        for (int i = 0; i < count; ++i) {
+            expressions.add(readExpression());
+        }
+        return expressions;
+    }
+
+    private Expression resolved(Resolvable expression) {
+        var depth = in.getInt();
+        var index = in.getInt();
+        if (depth >= 0 && index < 0 || depth < -1) {
+            throw new CorruptCacheException("Bad slot " + depth + ", " + index);
+        }
+        if (depth >= 0) {
+            expression.resolve(new Slot(depth, index));
+        }
+        return expression;
+    }
+
+    private Token readToken() {
+        var type = in.get();
+        if (type < 0 || type >= TOKEN_TYPES.length) {
+            throw new CorruptCacheException("Unknown token type " + type);
+        }
+        var index = in.getInt();
+        if (index >= symbols.length) {
+            throw new CorruptCacheException("Unknown symbol " + index);
+        }
+        var tokenType = TOKEN_TYPES[type];
+        var symbol = index < 0 ? Symbols.NONE : symbols[index];
+        var value = readValue();
+        // Only identifiers have a symbol, the text of any other token comes from its type or its value
+        var valid = switch (tokenType) {
+            case IDENTIFIER -> symbol != Symbols.NONE;
+            case STRING -> symbol == Symbols.NONE && value instanceof String;
+            case NUMBER -> symbol == Symbols.NONE && value instanceof Double;
+            default -> symbol == Symbols.NONE;
+        };
+        if (!valid) {
+            throw new CorruptCacheException("Malformed " + tokenType + " token");
+        }
+        return new Token(tokenType, symbol, value, in.getInt(), in.getInt());
+    }
+
+    private Token readName() {
+        var token = readToken();
+        if (token.type() != TokenType.IDENTIFIER) {
+            throw new CorruptCacheException("Name expected");
+        }
+        return token;
+    }
+
+    private Object readValue() {
+        var tag = in.get();
+        return switch (tag) {
+            case NIL_VALUE -> null;
+            case TRUE_VALUE -> true;
+            case FALSE_VALUE -> false;
+            case NUMBER_VALUE -> in.getDouble();
+            case STRING_VALUE -> readString();
+            default -> throw new CorruptCacheException("Unknown value " + tag);
+        };
+    }
+
+    private String readString() {
+        var bytes = new byte[count()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int count() {
+        var count = in.getInt();
+        if (count < 0 || count > in.remaining()) {
+            throw new CorruptCacheException("Bad length " + count);
+        }
+        return count;
+    }
+}
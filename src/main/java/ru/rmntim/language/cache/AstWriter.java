@@ -0,0 +1,371 @@
+package ru.rmntim.language.cache;
+
+import ru.rmntim.language.interpreter.expression.*;
+import ru.rmntim.language.interpreter.statement.Class;
+import ru.rmntim.language.interpreter.statement.*;
+import ru.rmntim.language.token.Symbols;
+import ru.rmntim.language.token.Token;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import static ru.rmntim.language.cache.AstFormat.*;
+
+/**
+ * Writes resolved statements in the {@link AstFormat} layout.
+ */
+final class AstWriter implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(body);
+    // Symbol ids differ between runs, so the file has a table of its own
+    private final Map<Integer, Integer> symbolIndices = new HashMap<>();
+    private final List<String> symbols = new ArrayList<>();
+
+    void write(List<Statement> statements, OutputStream destination) throws IOException {
+        try {
+            out.writeInt(statements.size());
+            for (var statement : statements) {
+                write(statement);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        var payload = new ByteArrayOutputStream();
+        var data = new DataOutputStream(payload);
+        data.writeInt(symbols.size());
+        for (var symbol : symbols) {
+            writeString(data, symbol);
+        }
+        body.writeTo(data);
+        var checksum = new CRC32C();
+        checksum.update(payload.toByteArray());
+
+        var file = new DataOutputStream(destination);
+        file.writeInt(MAGIC);
+        file.writeInt(VERSION);
+        file.writeInt((int) checksum.getValue());
+        payload.writeTo(file);
+        file.flush();
+    }
+
+    @Override
+    public Void visit(Binary expression) {
+        tag(BINARY);
+        write(expression.getLeft());
+        write(expression.getOperator());
+        write(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Unary expression) {
+        tag(UNARY);
+        write(expression.getOperator());
+        write(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Grouping expression) {
+        tag(GROUPING);
+        write(expression.getSubExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Literal expression) {
+        tag(LITERAL);
+        writeValue(expression.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Variable expression) {
+        tag(VARIABLE);
+        write(expression.getName());
+        writeSlot(expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(Assignment expression) {
+        tag(ASSIGNMENT);
+        write(expression.getName());
+        write(expression.getValue());
+        writeSlot(expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ternary expression) {
+        tag(TERNARY);
+        write(expression.getCondition());
+        write(expression.getThenBranch());
+        write(expression.getElseBranch());
+        return null;
+    }
+
+    @Override
+    public Void visit(Logical expression) {
+        tag(LOGICAL);
+        write(expression.getLeft());
+        write(expression.getOperator());
+        write(expression.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Call expression) {
+        tag(CALL);
+        write(expression.getCalee());
+        write(expression.getParen());
+        writeInt(expression.getArguments().size());
+        for (var argument : expression.getArguments()) {
+            write(argument);
+        }
+        writeBoolean(expression.isTailCall());
+        return null;
+    }
+
+    @Override
+    public Void visit(Get expression) {
+        tag(GET);
+        write(expression.getObject());
+        write(expression.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Set expression) {
+        tag(SET);
+        write(expression.getObject());
+        write(expression.getName());
+        write(expression.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Self expression) {
+        tag(SELF);
+        write(expression.getKeyword());
+        writeSlot(expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(Super expression) {
+        tag(SUPER);
+        write(expression.getKeyword());
+        write(expression.getMethod());
+        writeSlot(expression);
+        return null;
+    }
+
+    @Override
+    public Void visit(ArrayLiteral expression) {
+        tag(ARRAY);
+        writeInt(expression.getElements().size());
+        for (var element : expression.getElements()) {
+            write(element);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(GetIndex expression) {
+        tag(GET_INDEX);
+        write(expression.getArray());
+        write(expression.getBracket());
+        write(expression.getIndex());
+        return null;
+    }
+
+    @Override
+    public Void visit(SetIndex expression) {
+        tag(SET_INDEX);
+        write(expression.getArray());
+        write(expression.getBracket());
+        write(expression.getIndex());
+        write(expression.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expr statement) {
+        tag(EXPR);
+        write(statement.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Let statement) {
+        tag(LET);
+        write(statement.getName());
+        write(statement.getInitializer());
+        return null;
+    }
+
+    @Override
+    public Void visit(Block statement) {
+        tag(BLOCK);
+        writeStatements(statement.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(If statement) {
+        tag(IF);
+        write(statement.getCondition());
+        write(statement.getThenBranch());
+        write(statement.getElseBranch().orElse(null));
+        return null;
+    }
+
+    @Override
+    public Void visit(While statement) {
+        tag(WHILE);
+        write(statement.getCondition());
+        write(statement.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visit(Break statement) {
+        tag(BREAK);
+        write(statement.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Function statement) {
+        tag(FUNCTION);
+        write(statement.getName());
+        writeInt(statement.getParams().size());
+        for (var param : statement.getParams()) {
+            write(param);
+        }
+        writeStatements(statement.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visit(Return statement) {
+        tag(RETURN);
+        write(statement.getKeyword());
+        write(statement.getValue().orElse(null));
+        return null;
+    }
+
+    @Override
+    public Void visit(Class statement) {
+        tag(CLASS);
+        write(statement.getName());
+        write(statement.getSuperclass().orElse(null));
+        writeStatements(statement.getMethods());
+        return null;
+    }
+
+    private void write(Expression expression) {
+        if (expression == null) {
+            tag(NULL);
+        } else {
+            expression.accept(this);
+        }
+    }
+
+    private void write(Statement statement) {
+        if (statement == null) {
+            tag(NULL);
+        } else {
+            statement.accept(this);
+        }
+    }
+
+    private void writeStatements(List<? extends Statement> statements) {
+        writeInt(statements.size());
+        for (var statement : statements) {
+            write(statement);
+        }
+    }
+
+    private void write(Token token) {
+        tag((byte) token.type().ordinal());
+        if (token.symbol() == Symbols.NONE) {
+            writeInt(-1);
+        } else {
+            writeInt(symbolIndices.computeIfAbsent(token.symbol(), symbol -> {
+                symbols.add(Symbols.name(symbol));
+                return symbols.size() - 1;
+            }));
+        }
+        writeValue(token.value());
+        writeInt(token.line());
+        writeInt(token.offset());
+    }
+
+    private void writeSlot(Resolvable expression) {
+        var slot = expression.getSlot();
+        writeInt(slot == null ? -1 : slot.depth());
+        writeInt(slot == null ? -1 : slot.index());
+    }
+
+    private void writeValue(Object value) {
+        try {
+            switch (value) {
+                case null -> out.writeByte(NIL_VALUE);
+                case Boolean bool -> out.writeByte(bool ? TRUE_VALUE : FALSE_VALUE);
+                case Double number -> {
+                    out.writeByte(NUMBER_VALUE);
+                    out.writeDouble(number);
+                }
+                case String string -> {
+                    out.writeByte(STRING_VALUE);
+                    writeString(out, string);
+                }
+                default -> throw new IllegalArgumentException("Unexpected literal " + value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void tag(byte tag) {
+        try {
+            out.writeByte(tag);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBoolean(boolean value) {
+        try {
+            out.writeBoolean(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeInt(int value) {
+        try {
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        var bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.rmntim.language.cache;
+
+/**
+ * A cache file that can't be read back; the script is then compiled from source instead.
+ */
+final class CorruptCacheException extends RuntimeException {
+    CorruptCacheException(String message) {
+        super(message);
+    }
+}
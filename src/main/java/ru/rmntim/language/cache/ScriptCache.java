@@ -0,0 +1,74 @@
+package ru.rmntim.language.cache;
+
+import ru.rmntim.language.interpreter.statement.Statement;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Resolved programs saved on disk, so running an unchanged script again skips the scanner,
+ * the parser and the resolver.
+ * <p>
+ * Entries are named after the SHA-256 of the script's bytes, so an edited script simply misses.
+ * The key is computed from the same bytes that are parsed, so a script changing in between can't be
+ * stored under the hash of its other version. Entries are read through memory mappings. The cache is
+ * best effort: an entry that can't be read, doesn't match its checksum or can't be written is ignored
+ * and the script is compiled from source.
+ */
+public class ScriptCache {
+    private static final String EXTENSION = ".loxc";
+
+    private final Path directory;
+
+    public ScriptCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public String key(byte[] script) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the resolved statements, or {@code null} if they aren't cached
+     */
+    public List<Statement> load(String key) {
+        var entry = directory.resolve(key + EXTENSION);
+        try (var channel = FileChannel.open(entry)) {
+            var bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new AstReader(bytes).read();
+        } catch (IOException | RuntimeException e) {
+            // Whatever a damaged entry makes the reader trip over, it's just a miss
+            return null;
+        }
+    }
+
+    public void store(String key, List<Statement> statements) {
+        try {
+            Files.createDirectories(directory);
+            // Written aside and moved in place, so that a concurrent run never sees half of an entry
+            var temporary = Files.createTempFile(directory, key, ".tmp");
+            try {
+                try (var out = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                    new AstWriter().write(statements, out);
+                }
+                Files.move(temporary, directory.resolve(key + EXTENSION), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+}
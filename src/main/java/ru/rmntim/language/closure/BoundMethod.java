@@ -0,0 +1,8 @@
+package ru.rmntim.language.closure;
+
+record BoundMethod(Object receiver, ClosureFunction method) {
+    @Override
+    public String toString() {
+        return method.toString();
+    }
+}
@@ -0,0 +1,12 @@
+package ru.rmntim.language.closure;
+
+/**
+ * Box for a local variable that is captured by a closure. Locals nobody captures are stored in the frame directly.
+ */
+final class Cell {
+    Object value;
+
+    Cell(Object value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,25 @@
+package ru.rmntim.language.closure;
+
+import java.util.HashMap;
+import java.util.Map;
+
+final class ClosureClass {
+    final String name;
+    // Includes inherited methods, so lookups never walk the superclass chain
+    final Map<String, ClosureFunction> methods = new HashMap<>();
+    final ClosureFunction initializer;
+
+    ClosureClass(String name, ClosureClass superclass, Map<String, ClosureFunction> ownMethods) {
+        this.name = name;
+        if (superclass != null) {
+            methods.putAll(superclass.methods);
+        }
+        methods.putAll(ownMethods);
+        this.initializer = methods.get("init");
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,833 @@
+package ru.rmntim.language.closure;
+
+import ru.rmntim.language.env.Environment;
+import ru.rmntim.language.env.NativeFunction;
+import ru.rmntim.language.interpreter.LoxArray;
+import ru.rmntim.language.interpreter.RuntimeError;
+import ru.rmntim.language.interpreter.ValueError;
+import ru.rmntim.language.interpreter.Values;
+import ru.rmntim.language.interpreter.expression.*;
+import ru.rmntim.language.interpreter.statement.Class;
+import ru.rmntim.language.interpreter.statement.*;
+import ru.rmntim.language.token.Symbols;
+import ru.rmntim.language.token.Token;
+import ru.rmntim.language.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translates resolved statements into a tree of {@link ExpressionNode}/{@link StatementNode} lambdas.
+ * <p>
+ * Everything the tree-walker figures out on every execution is decided here once: which frame slot,
+ * captured cell or global a name refers to, which operator a node implements and whether a local
+ * may be read before it's initialized. The lambdas only capture those decisions.
+ * <p>
+ * All scopes of a function share one frame. A local is boxed in a {@link Cell} only if some closure
+ * captures it, which is known after the whole program has been seen, so the program is compiled twice:
+ * the first pass only collects the captured declarations.
+ */
+final class ClosureCompiler implements Expression.Visitor<ExpressionNode>, Statement.Visitor<StatementNode> {
+    /**
+     * @param key identifies the declaration across both passes
+     */
+    private record Local(Object key, int slot, boolean boxed, boolean checked) {
+    }
+
+    private record Capture(boolean fromSlot, int index, boolean checked) {
+    }
+
+    private static final class FunctionScope {
+        final FunctionScope enclosing;
+        final List<Map<String, Local>> blocks = new ArrayList<>();
+        final List<Capture> captures = new ArrayList<>();
+        int nextSlot = 0;
+        int frameSize = 0;
+
+        FunctionScope(FunctionScope enclosing) {
+            this.enclosing = enclosing;
+        }
+    }
+
+    private final Map<String, Global> globals;
+    private final java.util.Set<Object> captured;
+    private FunctionScope function = new FunctionScope(null);
+
+    private ClosureCompiler(Map<String, Global> globals, java.util.Set<Object> captured) {
+        this.globals = globals;
+        this.captured = captured;
+    }
+
+    static FunctionTemplate compile(List<Statement> statements, Map<String, Global> globals) {
+        var captured = Collections.newSetFromMap(new IdentityHashMap<>());
+        new ClosureCompiler(globals, captured).script(statements);
+        return new ClosureCompiler(globals, captured).script(statements);
+    }
+
+    private FunctionTemplate script(List<Statement> statements) {
+        var template = new FunctionTemplate("script", 0, false);
+        template.body = statements(statements);
+        template.frameSize = function.frameSize;
+        template.boxedSlots = new int[0];
+        template.captureFromSlot = new boolean[0];
+        template.captureIndices = new int[0];
+        return template;
+    }
+
+    @Override
+    public ExpressionNode visit(Literal expression) {
+        var value = expression.getValue();
+        return frame -> value;
+    }
+
+    @Override
+    public ExpressionNode visit(Grouping expression) {
+        return compile(expression.getSubExpression());
+    }
+
+    @Override
+    public ExpressionNode visit(Unary expression) {
+        var operator = expression.getOperator();
+        var right = compile(expression.getRight());
+        return switch (operator.type()) {
+            case MINUS -> frame -> {
+                if (right.execute(frame) instanceof Double value) {
+                    return -value;
+                }
+                throw new RuntimeError(operator, "Operand must be a number");
+            };
+            case BANG -> frame -> !Values.isTruthy(right.execute(frame));
+            default -> throw new IllegalStateException("Unknown unary operator " + operator.literal());
+        };
+    }
+
+    @Override
+    public ExpressionNode visit(Binary expression) {
+        var operator = expression.getOperator();
+        var left = compile(expression.getLeft());
+        var right = compile(expression.getRight());
+        return switch (operator.type()) {
+            case PLUS -> frame -> {
+                var l = left.execute(frame);
+                var r = right.execute(frame);
+                if (l instanceof Double a && r instanceof Double b) {
+                    return a + b;
+                }
+                var sum = Values.add(l, r);
+                if (sum == null) {
+                    throw new RuntimeError(operator, "Operands must be either strings or numbers");
+                }
+                return sum;
+            };
+            case MINUS -> frame -> {
+                var l = left.execute(frame);
+                var r = right.execute(frame);
+                if (l instanceof Double a && r instanceof Double b) {
+                    return a - b;
+                }
+                throw numbersExpected(operator);
+            };
+            case STAR -> frame -> {
+                var l = left.execute(frame);
+                var r = right.execute(frame);
+                if (l instanceof Double a && r instanceof Double b) {
+                    return a * b;
+                }
+                throw numbersExpected(operator);
+            };
+            case SLASH -> frame -> {
+                var l = left.execute(frame);
+                var r = right.execute(frame);
+                if (l instanceof Double a && r instanceof Double b) {
+                    return a / b;
+                }
+                throw numbersExpected(operator);
+            };
+            case GREATER -> frame -> {
+                var l = left.execute(frame);
+                var r = right.execute(frame);
+                if (l instanceof Double a && r instanceof Double b) {
+                    return a > b;
+                }
+                throw numbersExpected(operator);
+            };
+            case GREATER_EQUAL -> frame -> {
+                var l = left.execute(frame);
+                var r = right.execute(frame);
+                if (l instanceof Double a && r instanceof Double b) {
+                    return a >= b;
+                }
+                throw numbersExpected(operator);
+            };
+            case LESS -> frame -> {
+                var l = left.execute(frame);
+                var r = right.execute(frame);
+                if (l instanceof Double a && r instanceof Double b) {
+                    return a < b;
+                }
+                throw numbersExpected(operator);
+            };
+            case LESS_EQUAL -> frame -> {
+                var l = left.execute(frame);
+                var r = right.execute(frame);
+                if (l instanceof Double a && r instanceof Double b) {
+                    return a <= b;
+                }
+                throw numbersExpected(operator);
+            };
+            case EQUAL_EQUAL -> frame -> Values.isEqual(left.execute(frame), right.execute(frame));
+            case BANG_EQUAL -> frame -> !Values.isEqual(left.execute(frame), right.execute(frame));
+            default -> throw new IllegalStateException("Unknown binary operator " + operator.literal());
+        };
+    }
+
+    @Override
+    public ExpressionNode visit(Variable expression) {
+        return load(expression.getName());
+    }
+
+    @Override
+    public ExpressionNode visit(Assignment expression) {
+        var name = expression.getName();
+        var value = compile(expression.getValue());
+
+        var local = findLocal(function, name.literal());
+        if (local != null) {
+            var slot = local.slot();
+            if (local.boxed()) {
+                return frame -> ((Cell) frame.slots[slot]).value = value.execute(frame);
+            }
+            return frame -> frame.slots[slot] = value.execute(frame);
+        }
+
+        var capture = resolveCapture(function, name.literal());
+        if (capture != -1) {
+            return frame -> frame.captures[capture].value = value.execute(frame);
+        }
+
+        var global = global(name.literal());
+        return frame -> {
+            var result = value.execute(frame);
+            if (global.value == Global.UNDEFINED) {
+                throw new RuntimeError(name, "Undefined variable '" + name.literal() + "'");
+            }
+            global.value = result;
+            return result;
+        };
+    }
+
+    @Override
+    public ExpressionNode visit(Ternary expression) {
+        var condition = compile(expression.getCondition());
+        var thenBranch = compile(expression.getThenBranch());
+        var elseBranch = compile(expression.getElseBranch());
+        return frame -> Values.isTruthy(condition.execute(frame))
+                ? thenBranch.execute(frame)
+                : elseBranch.execute(frame);
+    }
+
+    @Override
+    public ExpressionNode visit(Logical expression) {
+        var left = compile(expression.getLeft());
+        var right = compile(expression.getRight());
+        return switch (expression.getOperator().type()) {
+            case AND -> frame -> {
+                var value = left.execute(frame);
+                return Values.isTruthy(value) ? right.execute(frame) : value;
+            };
+            case OR -> frame -> {
+                var value = left.execute(frame);
+                return Values.isTruthy(value) ? value : right.execute(frame);
+            };
+            default -> throw new IllegalStateException("Unknown logical operator " + expression.getOperator().literal());
+        };
+    }
+
+    @Override
+    public ExpressionNode visit(Call expression) {
+        var paren = expression.getParen();
+        var arguments = compile(expression.getArguments());
+        var argumentCount = arguments.length;
+
+        if (expression.getCalee() instanceof Get get) {
+            return invoke(get, arguments, paren);
+        }
+        if (expression.getCalee() instanceof Super super_) {
+            return superInvoke(super_, arguments, paren);
+        }
+
+        var callee = compile(expression.getCalee());
+        return frame -> {
+            var value = callee.execute(frame);
+            // Evaluate arguments right into the callee's frame when nothing can go wrong with the call
+            if (value instanceof ClosureFunction function && function.template.arity == argumentCount) {
+                var calleeFrame = function.newFrame();
+                for (int i = 0; i < argumentCount; ++i) {
+                    calleeFrame.slots[i + 1] = arguments[i].execute(frame);
+                }
+                return function.invoke(calleeFrame);
+            }
+            return call(value, evaluate(arguments, frame), paren);
+        };
+    }
+
+    @Override
+    public ExpressionNode visit(Get expression) {
+        var object = compile(expression.getObject());
+        var name = expression.getName();
+        return frame -> {
+            if (!(object.execute(frame) instanceof ClosureInstance instance)) {
+                throw new RuntimeError(name, "Only instances are allowed to have properties");
+            }
+            var field = instance.fields.get(name.literal());
+            if (field != null || instance.fields.containsKey(name.literal())) {
+                return field;
+            }
+            return new BoundMethod(instance, findMethod(instance.class_, name));
+        };
+    }
+
+    @Override
+    public ExpressionNode visit(Set expression) {
+        var object = compile(expression.getObject());
+        var name = expression.getName();
+        var value = compile(expression.getValue());
+        return frame -> {
+            if (!(object.execute(frame) instanceof ClosureInstance instance)) {
+                throw new RuntimeError(name, "Only instances are allowed to have properties");
+            }
+            var result = value.execute(frame);
+            instance.fields.put(name.literal(), result);
+            return result;
+        };
+    }
+
+    @Override
+    public ExpressionNode visit(Self expression) {
+        return load(expression.getKeyword());
+    }
+
+    @Override
+    public ExpressionNode visit(Super expression) {
+        var superclass = load(expression.getKeyword());
+        var self = load(selfToken(expression.getKeyword()));
+        var method = expression.getMethod();
+        return frame -> new BoundMethod(self.execute(frame), findMethod((ClosureClass) superclass.execute(frame), method));
+    }
+
+    @Override
+    public ExpressionNode visit(ArrayLiteral expression) {
+        var elements = compile(expression.getElements());
+        return frame -> {
+            var array = new LoxArray(elements.length);
+            for (var element : elements) {
+                array.push(element.execute(frame));
+            }
+            return array;
+        };
+    }
+
+    @Override
+    public ExpressionNode visit(GetIndex expression) {
+        var array = compile(expression.getArray());
+        var index = compile(expression.getIndex());
+        var bracket = expression.getBracket();
+        return frame -> {
+            var object = array.execute(frame);
+            var position = index.execute(frame);
+            if (!(object instanceof LoxArray loxArray)) {
+                throw new RuntimeError(bracket, "Only arrays can be indexed");
+            }
+            try {
+                return loxArray.get(position);
+            } catch (ValueError error) {
+                throw new RuntimeError(bracket, error.getMessage());
+            }
+        };
+    }
+
+    @Override
+    public ExpressionNode visit(SetIndex expression) {
+        var array = compile(expression.getArray());
+        var index = compile(expression.getIndex());
+        var value = compile(expression.getValue());
+        var bracket = expression.getBracket();
+        return frame -> {
+            var object = array.execute(frame);
+            var position = index.execute(frame);
+            var result = value.execute(frame);
+            if (!(object instanceof LoxArray loxArray)) {
+                throw new RuntimeError(bracket, "Only arrays can be indexed");
+            }
+            try {
+                loxArray.set(position, result);
+            } catch (ValueError error) {
+                throw new RuntimeError(bracket, error.getMessage());
+            }
+            return result;
+        };
+    }
+
+    @Override
+    public StatementNode visit(Expr statement) {
+        var expression = compile(statement.getExpression());
+        return frame -> {
+            expression.execute(frame);
+            return StatementNode.NORMAL;
+        };
+    }
+
+    @Override
+    public StatementNode visit(Let statement) {
+        var initializer = statement.getInitializer() == null
+                ? (ExpressionNode) frame -> Environment.UNINITIALIZED
+                : compile(statement.getInitializer());
+
+        if (isGlobalScope()) {
+            var global = global(statement.getName().literal());
+            return frame -> {
+                global.value = initializer.execute(frame);
+                return StatementNode.NORMAL;
+            };
+        }
+
+        var local = declare(statement.getName().literal(), statement.getName(), statement.getInitializer() == null);
+        var slot = local.slot();
+        if (local.boxed()) {
+            return frame -> {
+                frame.slots[slot] = new Cell(initializer.execute(frame));
+                return StatementNode.NORMAL;
+            };
+        }
+        return frame -> {
+            frame.slots[slot] = initializer.execute(frame);
+            return StatementNode.NORMAL;
+        };
+    }
+
+    @Override
+    public StatementNode visit(Block statement) {
+        beginScope();
+        var statements = statements(statement.getStatements());
+        endScope();
+        return frame -> {
+            for (var inner : statements) {
+                var completion = inner.execute(frame);
+                if (completion != StatementNode.NORMAL) {
+                    return completion;
+                }
+            }
+            return StatementNode.NORMAL;
+        };
+    }
+
+    @Override
+    public StatementNode visit(If statement) {
+        var condition = compile(statement.getCondition());
+        var thenBranch = compile(statement.getThenBranch());
+        if (statement.getElseBranch().isEmpty()) {
+            return frame -> Values.isTruthy(condition.execute(frame))
+                    ? thenBranch.execute(frame)
+                    : StatementNode.NORMAL;
+        }
+        var elseBranch = compile(statement.getElseBranch().get());
+        return frame -> Values.isTruthy(condition.execute(frame))
+                ? thenBranch.execute(frame)
+                : elseBranch.execute(frame);
+    }
+
+    @Override
+    public StatementNode visit(While statement) {
+        var condition = compile(statement.getCondition());
+        var body = compile(statement.getBody());
+        return frame -> {
+            while (Values.isTruthy(condition.execute(frame))) {
+                var completion = body.execute(frame);
+                if (completion == StatementNode.BREAK) {
+                    break;
+                }
+                if (completion == StatementNode.RETURN) {
+                    return completion;
+                }
+            }
+            return StatementNode.NORMAL;
+        };
+    }
+
+    @Override
+    public StatementNode visit(Break statement) {
+        return frame -> StatementNode.BREAK;
+    }
+
+    @Override
+    public StatementNode visit(Function statement) {
+        var name = statement.getName();
+        var definition = define(name.literal(), name);
+        // Declared before the body is compiled, so the function can call itself
+        var closure = closure(function(statement, false));
+        return frame -> {
+            definition.store(frame, closure);
+            return StatementNode.NORMAL;
+        };
+    }
+
+    @Override
+    public StatementNode visit(Return statement) {
+        if (statement.getValue().isEmpty()) {
+            return frame -> {
+                frame.returnValue = null;
+                return StatementNode.RETURN;
+            };
+        }
+        var value = compile(statement.getValue().get());
+        return frame -> {
+            frame.returnValue = value.execute(frame);
+            return StatementNode.RETURN;
+        };
+    }
+
+    @Override
+    public StatementNode visit(Class statement) {
+        var name = statement.getName().literal();
+        var definition = define(name, statement.getName());
+
+        ExpressionNode superclass = null;
+        Local superLocal = null;
+        if (statement.getSuperclass().isPresent()) {
+            superclass = compile(statement.getSuperclass().get());
+            beginScope();
+            superLocal = declare("super", statement, false);
+        }
+
+        var methodNames = new String[statement.getMethods().size()];
+        var methods = new ExpressionNode[methodNames.length];
+        for (int i = 0; i < methods.length; ++i) {
+            var method = statement.getMethods().get(i);
+            methodNames[i] = method.getName().literal();
+            methods[i] = closure(function(method, true));
+        }
+
+        if (superclass != null) {
+            endScope();
+        }
+
+        var superclassNode = superclass;
+        var superclassToken = statement.getSuperclass().map(Variable::getName).orElse(null);
+        var superSlot = superLocal == null ? -1 : superLocal.slot();
+        var superBoxed = superLocal != null && superLocal.boxed();
+        ExpressionNode classNode = frame -> {
+            ClosureClass parent = null;
+            if (superclassNode != null) {
+                if (!(superclassNode.execute(frame) instanceof ClosureClass value)) {
+                    throw new RuntimeError(superclassToken, "Superclass must be a class");
+                }
+                parent = value;
+                frame.slots[superSlot] = superBoxed ? new Cell(parent) : parent;
+            }
+
+            var ownMethods = new HashMap<String, ClosureFunction>();
+            for (int i = 0; i < methods.length; ++i) {
+                ownMethods.put(methodNames[i], (ClosureFunction) methods[i].execute(frame));
+            }
+            return new ClosureClass(name, parent, ownMethods);
+        };
+        return frame -> {
+            definition.store(frame, classNode);
+            return StatementNode.NORMAL;
+        };
+    }
+
+    /**
+     * Where a function or a class declaration puts its value.
+     */
+    private record Definition(Global global, int slot, boolean boxed) {
+        void store(Frame frame, ExpressionNode value) {
+            if (global != null) {
+                global.value = value.execute(frame);
+            } else if (boxed) {
+                // The cell must exist before the value is created, as methods and the function itself capture it
+                var cell = new Cell(null);
+                frame.slots[slot] = cell;
+                cell.value = value.execute(frame);
+            } else {
+                frame.slots[slot] = value.execute(frame);
+            }
+        }
+    }
+
+    private Definition define(String name, Token key) {
+        if (isGlobalScope()) {
+            return new Definition(global(name), -1, false);
+        }
+        var local = declare(name, key, false);
+        return new Definition(null, local.slot(), local.boxed());
+    }
+
+    private FunctionTemplate function(Function declaration, boolean isMethod) {
+        var isInitializer = isMethod && declaration.getName().literal().equals("init");
+        var template = new FunctionTemplate(declaration.getName().literal(),
+                declaration.getParams().size(), isInitializer);
+
+        function = new FunctionScope(function);
+        beginScope();
+
+        // Slot 0 holds the receiver, so arguments start at 1 for plain functions too
+        var boxedSlots = new ArrayList<Integer>();
+        var receiver = declare(isMethod ? "self" : "", declaration, false);
+        if (receiver.boxed()) {
+            boxedSlots.add(receiver.slot());
+        }
+        for (var param : declaration.getParams()) {
+            var local = declare(param.literal(), param, false);
+            if (local.boxed()) {
+                boxedSlots.add(local.slot());
+            }
+        }
+
+        template.body = statements(declaration.getBody());
+        template.frameSize = function.frameSize;
+        template.boxedSlots = boxedSlots.stream().mapToInt(Integer::intValue).toArray();
+        template.captureFromSlot = new boolean[function.captures.size()];
+        template.captureIndices = new int[function.captures.size()];
+        for (int i = 0; i < function.captures.size(); ++i) {
+            template.captureFromSlot[i] = function.captures.get(i).fromSlot();
+            template.captureIndices[i] = function.captures.get(i).index();
+        }
+
+        endScope();
+        function = function.enclosing;
+        return template;
+    }
+
+    private static ExpressionNode closure(FunctionTemplate template) {
+        var fromSlot = template.captureFromSlot;
+        var indices = template.captureIndices;
+        return frame -> {
+            var captures = new Cell[indices.length];
+            for (int i = 0; i < indices.length; ++i) {
+                captures[i] = fromSlot[i] ? (Cell) frame.slots[indices[i]] : frame.captures[indices[i]];
+            }
+            return new ClosureFunction(template, captures);
+        };
+    }
+
+    private ExpressionNode invoke(Get callee, ExpressionNode[] arguments, Token paren) {
+        var object = compile(callee.getObject());
+        var name = callee.getName();
+        return frame -> {
+            if (!(object.execute(frame) instanceof ClosureInstance instance)) {
+                throw new RuntimeError(name, "Only instances are allowed to have properties");
+            }
+            var field = instance.fields.get(name.literal());
+            if (field != null || instance.fields.containsKey(name.literal())) {
+                return call(field, evaluate(arguments, frame), paren);
+            }
+            // Call the method directly instead of creating a bound method first
+            return findMethod(instance.class_, name).call(instance, evaluate(arguments, frame), paren);
+        };
+    }
+
+    private ExpressionNode superInvoke(Super callee, ExpressionNode[] arguments, Token paren) {
+        var superclass = load(callee.getKeyword());
+        var self = load(selfToken(callee.getKeyword()));
+        var method = callee.getMethod();
+        return frame -> {
+            var function = findMethod((ClosureClass) superclass.execute(frame), method);
+            return function.call(self.execute(frame), evaluate(arguments, frame), paren);
+        };
+    }
+
+    private static Object call(Object callee, Object[] arguments, Token paren) {
+        return switch (callee) {
+            case ClosureFunction function -> function.call(null, arguments, paren);
+            case BoundMethod bound -> bound.method().call(bound.receiver(), arguments, paren);
+            case ClosureClass class_ -> {
+                var instance = new ClosureInstance(class_);
+                if (class_.initializer != null) {
+                    class_.initializer.call(instance, arguments, paren);
+                } else if (arguments.length != 0) {
+                    throw new RuntimeError(paren, "Expected 0 arguments but got " + arguments.length);
+                }
+                yield instance;
+            }
+            case NativeFunction function -> {
+                if (arguments.length != function.arity()) {
+                    throw new RuntimeError(paren,
+                            "Expected " + function.arity() + " arguments but got " + arguments.length);
+                }
+                try {
+                    yield function.call(Arrays.asList(arguments));
+                } catch (ValueError error) {
+                    throw new RuntimeError(paren, error.getMessage());
+                }
+            }
+            case null, default -> throw new RuntimeError(paren, "Call to a non-callable object");
+        };
+    }
+
+    private static ClosureFunction findMethod(ClosureClass class_, Token name) {
+        var method = class_.methods.get(name.literal());
+        if (method == null) {
+            throw new RuntimeError(name, "Undefined property '" + name.literal() + "'");
+        }
+        return method;
+    }
+
+    private static Object[] evaluate(ExpressionNode[] nodes, Frame frame) {
+        var values = new Object[nodes.length];
+        for (int i = 0; i < nodes.length; ++i) {
+            values[i] = nodes[i].execute(frame);
+        }
+        return values;
+    }
+
+    private static RuntimeError numbersExpected(Token operator) {
+        return new RuntimeError(operator, "Operand must be a number");
+    }
+
+    private ExpressionNode load(Token name) {
+        var message = "Uninitialized variable '" + name.literal() + "'";
+
+        var local = findLocal(function, name.literal());
+        if (local != null) {
+            var slot = local.slot();
+            if (local.boxed()) {
+                if (local.checked()) {
+                    return frame -> checkInitialized(((Cell) frame.slots[slot]).value, name, message);
+                }
+                return frame -> ((Cell) frame.slots[slot]).value;
+            }
+            if (local.checked()) {
+                return frame -> checkInitialized(frame.slots[slot], name, message);
+            }
+            return frame -> frame.slots[slot];
+        }
+
+        var capture = resolveCapture(function, name.literal());
+        if (capture != -1) {
+            if (function.captures.get(capture).checked()) {
+                return frame -> checkInitialized(frame.captures[capture].value, name, message);
+            }
+            return frame -> frame.captures[capture].value;
+        }
+
+        var global = global(name.literal());
+        return frame -> {
+            var value = global.value;
+            if (value == Global.UNDEFINED) {
+                throw new RuntimeError(name, "Undefined variable '" + name.literal() + "'");
+            }
+            return checkInitialized(value, name, message);
+        };
+    }
+
+    /**
+     * `super` needs the receiver too, which is the `self` of the enclosing method.
+     */
+    private static Token selfToken(Token superKeyword) {
+        return new Token(TokenType.SELF, Symbols.NONE, null, superKeyword.line(), superKeyword.offset());
+    }
+
+    private static Object checkInitialized(Object value, Token name, String message) {
+        if (value == Environment.UNINITIALIZED) {
+            throw new RuntimeError(name, message);
+        }
+        return value;
+    }
+
+    private boolean isGlobalScope() {
+        return function.enclosing == null && function.blocks.isEmpty();
+    }
+
+    private Global global(String name) {
+        return globals.computeIfAbsent(name, Global::new);
+    }
+
+    private void beginScope() {
+        function.blocks.add(new HashMap<>());
+    }
+
+    private void endScope() {
+        var block = function.blocks.removeLast();
+        // Slots of the block's locals can be reused, closures hold on to the cells rather than the slots
+        function.nextSlot -= block.size();
+    }
+
+    private Local declare(String name, Object key, boolean checked) {
+        var slot = function.nextSlot++;
+        function.frameSize = Math.max(function.frameSize, function.nextSlot);
+        var local = new Local(key, slot, captured.contains(key), checked);
+        function.blocks.getLast().put(name, local);
+        return local;
+    }
+
+    private static Local findLocal(FunctionScope function, String name) {
+        for (int i = function.blocks.size() - 1; i >= 0; --i) {
+            var local = function.blocks.get(i).get(name);
+            if (local != null) {
+                return local;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return index of the variable among the captures of the function, or -1 if it's a global
+     */
+    private int resolveCapture(FunctionScope function, String name) {
+        if (function.enclosing == null) {
+            return -1;
+        }
+
+        var local = findLocal(function.enclosing, name);
+        if (local != null) {
+            captured.add(local.key());
+            return addCapture(function, new Capture(true, local.slot(), local.checked()));
+        }
+
+        var index = resolveCapture(function.enclosing, name);
+        if (index != -1) {
+            var outer = function.enclosing.captures.get(index);
+            return addCapture(function, new Capture(false, index, outer.checked()));
+        }
+        return -1;
+    }
+
+    private static int addCapture(FunctionScope function, Capture capture) {
+        var index = function.captures.indexOf(capture);
+        if (index != -1) {
+            return index;
+        }
+        function.captures.add(capture);
+        return function.captures.size() - 1;
+    }
+
+    private StatementNode[] statements(List<Statement> statements) {
+        var nodes = new StatementNode[statements.size()];
+        for (int i = 0; i < nodes.length; ++i) {
+            nodes[i] = compile(statements.get(i));
+        }
+        return nodes;
+    }
+
+    private ExpressionNode[] compile(List<Expression> expressions) {
+        var nodes = new ExpressionNode[expressions.size()];
+        for (int i = 0; i < nodes.length; ++i) {
+            nodes[i] = compile(expressions.get(i));
+        }
+        return nodes;
+    }
+
+    private StatementNode compile(Statement statement) {
+        return statement.accept(this);
+    }
+
+    private ExpressionNode compile(Expression expression) {
+        return expression.accept(this);
+    }
+}
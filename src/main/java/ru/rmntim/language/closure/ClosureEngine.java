@@ -0,0 +1,35 @@
+package ru.rmntim.language.closure;
+
+import ru.rmntim.language.env.Natives;
+import ru.rmntim.language.interpreter.RuntimeError;
+import ru.rmntim.language.interpreter.statement.Statement;
+import ru.rmntim.language.util.ErrorReporter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs programs by compiling them into trees of closures first, an alternative to the tree-walking {@code Interpreter}.
+ * <p>
+ * Globals are kept between {@link #interpret(List)} calls, so the engine can back the REPL.
+ */
+public class ClosureEngine {
+    private final Map<String, Global> globals = new HashMap<>();
+
+    public ClosureEngine() {
+        Natives.create().forEach((name, function) -> globals.computeIfAbsent(name, Global::new).value = function);
+    }
+
+    public void interpret(List<Statement> statements) {
+        var script = ClosureCompiler.compile(statements, globals);
+        var frame = new Frame(script.frameSize, new Cell[0]);
+        try {
+            for (var statement : script.body) {
+                statement.execute(frame);
+            }
+        } catch (RuntimeError error) {
+            ErrorReporter.runtimeError(error);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.rmntim.language.closure;
+
+import ru.rmntim.language.interpreter.RuntimeError;
+import ru.rmntim.language.token.Token;
+
+final class ClosureFunction {
+    final FunctionTemplate template;
+    final Cell[] captures;
+
+    ClosureFunction(FunctionTemplate template, Cell[] captures) {
+        this.template = template;
+        this.captures = captures;
+    }
+
+    Frame newFrame() {
+        return new Frame(template.frameSize, captures);
+    }
+
+    /**
+     * Runs the function in a frame whose receiver and arguments are already filled in.
+     */
+    Object invoke(Frame frame) {
+        for (var slot : template.boxedSlots) {
+            frame.slots[slot] = new Cell(frame.slots[slot]);
+        }
+
+        Object result = null;
+        for (var statement : template.body) {
+            if (statement.execute(frame) == StatementNode.RETURN) {
+                result = frame.returnValue;
+                break;
+            }
+        }
+
+        if (template.isInitializer) {
+            var self = frame.slots[0];
+            return self instanceof Cell cell ? cell.value : self;
+        }
+        return result;
+    }
+
+    Object call(Object receiver, Object[] arguments, Token paren) {
+        if (arguments.length != template.arity) {
+            throw new RuntimeError(paren, "Expected " + template.arity + " arguments but got " + arguments.length);
+        }
+        var frame = newFrame();
+        frame.slots[0] = receiver;
+        System.arraycopy(arguments, 0, frame.slots, 1, arguments.length);
+        return invoke(frame);
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + template.name + ">";
+    }
+}
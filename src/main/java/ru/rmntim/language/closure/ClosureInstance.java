@@ -0,0 +1,18 @@
+package ru.rmntim.language.closure;
+
+import java.util.HashMap;
+import java.util.Map;
+
+final class ClosureInstance {
+    final ClosureClass class_;
+    final Map<String, Object> fields = new HashMap<>();
+
+    ClosureInstance(ClosureClass class_) {
+        this.class_ = class_;
+    }
+
+    @Override
+    public String toString() {
+        return class_.name + " instance";
+    }
+}
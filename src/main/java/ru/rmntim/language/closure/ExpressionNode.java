@@ -0,0 +1,6 @@
+package ru.rmntim.language.closure;
+
+@FunctionalInterface
+interface ExpressionNode {
+    Object execute(Frame frame);
+}
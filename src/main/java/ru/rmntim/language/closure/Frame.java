@@ -0,0 +1,15 @@
+package ru.rmntim.language.closure;
+
+/**
+ * Activation of a function. All scopes of the function share one frame, each local got its own slot at compile time.
+ */
+final class Frame {
+    final Object[] slots;
+    final Cell[] captures;
+    Object returnValue = null;
+
+    Frame(int size, Cell[] captures) {
+        this.slots = new Object[size];
+        this.captures = captures;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.rmntim.language.closure;
+
+/**
+ * Compiled function body. Every closure created from the same declaration shares it.
+ */
+final class FunctionTemplate {
+    final String name;
+    final int arity;
+    final boolean isInitializer;
+    int frameSize;
+    StatementNode[] body;
+    // Slots (receiver or parameters) that closures capture and thus have to be boxed on entry
+    int[] boxedSlots;
+    // Where each captured variable comes from in the frame the closure is created in
+    boolean[] captureFromSlot;
+    int[] captureIndices;
+
+    FunctionTemplate(String name, int arity, boolean isInitializer) {
+        this.name = name;
+        this.arity = arity;
+        this.isInitializer = isInitializer;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.rmntim.language.closure;
+
+/**
+ * A global variable. Nodes that refer to a global hold on to its `Global` directly,
+ * so globals are never looked up by name at runtime.
+ */
+final class Global {
+    static final Object UNDEFINED = new Object();
+
+    final String name;
+    Object value = UNDEFINED;
+
+    Global(String name) {
+        this.name = name;
+    }
+}
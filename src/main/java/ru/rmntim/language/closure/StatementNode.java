@@ -0,0 +1,14 @@
+package ru.rmntim.language.closure;
+
+/**
+ * Executable statement. Instead of throwing, `break` and `return` report how the statement completed.
+ */
+@FunctionalInterface
+interface StatementNode {
+    int NORMAL = 0;
+    int BREAK = 1;
+    // The returned value is stored in Frame.returnValue
+    int RETURN = 2;
+
+    int execute(Frame frame);
+}
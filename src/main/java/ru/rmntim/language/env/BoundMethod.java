@@ -0,0 +1,27 @@
+package ru.rmntim.language.env;
+
+import ru.rmntim.language.interpreter.Interpreter;
+import ru.rmntim.language.interpreter.LoxInstance;
+
+import java.util.List;
+
+/**
+ * Method taken off an instance as a value, e.g. `let f = obj.method;`.
+ * Calls of the form `obj.method()` don't create one.
+ */
+public record BoundMethod(LoxInstance receiver, LoxFunction method) implements LoxCallable {
+    @Override
+    public int arity() {
+        return method.arity();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return method.call(interpreter, receiver, arguments);
+    }
+
+    @Override
+    public String toString() {
+        return method.toString();
+    }
+}
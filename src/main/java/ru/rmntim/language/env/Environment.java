@@ -1,54 +1,43 @@
 package ru.rmntim.language.env;
 
-import ru.rmntim.language.interpreter.RuntimeError;
-import ru.rmntim.language.token.Token;
+import java.util.Arrays;
+
+/**
+ * A single lexical scope of local variables.
+ * <p>
+ * Variables live in an array and are addressed by the slot the {@code Resolver} assigned to them,
+ * so reading a local never hashes its name. Slots are handed out in declaration order, which is
+ * the same order the interpreter defines them in, so {@link #define(Object)} simply appends.
+ */
+public class Environment {
+    /**
+     * Marker stored for variables declared without an initializer.
+     */
+    public static final Object UNINITIALIZED = new Object();
 
-import java.util.HashMap;
-import java.util.Map;
+    private static final Object[] EMPTY = new Object[0];
 
-public class Environment {
-    private final Map<String, Object> variables = new HashMap<>();
+    private Object[] values = EMPTY;
+    private int size = 0;
     private final Environment parent;
 
-    public Environment() {
-        parent = null;
-    }
-
     public Environment(Environment parent) {
         this.parent = parent;
     }
 
-    public void define(String name, Variable value) {
-        variables.put(name, value);
-    }
-
-    public void define(String name, LoxCallable callable) {
-        variables.put(name, callable);
-    }
-
-    public Object get(Token name) {
-        if (variables.containsKey(name.literal())) {
-            var value = variables.get(name.literal());
-            if (value instanceof Variable variable) {
-                if (variable.isInitialized()) {
-                    return variable.getValue();
-                }
-
-                throw new RuntimeError(name, "Uninitialized variable '" + name.literal() + "'");
-            } else if (value instanceof LoxCallable callable) {
-                return callable;
-            }
-        }
-
-        if (parent != null) {
-            return parent.get(name);
+    public void define(Object value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size * 2));
         }
+        values[size++] = value;
+    }
 
-        throw new RuntimeError(name, "Undefined variable '" + name.literal() + "'");
+    public Object getAt(int distance, int slot) {
+        return ancestor(distance).values[slot];
     }
 
-    public Object getAt(int distance, String name) {
-        return ancestor(distance).variables.get(name);
+    public void assignAt(int distance, int slot, Object value) {
+        ancestor(distance).values[slot] = value;
     }
 
     private Environment ancestor(int distance) {
@@ -59,31 +48,6 @@ public class Environment {
         return environment;
     }
 
-    public void assign(Token name, Object newValue) {
-        if (variables.containsKey(name.literal())) {
-            var value = variables.get(name.literal());
-            if (value instanceof Variable variable) {
-                variable.setValue(newValue);
-                variable.setInitialized();
-                return;
-            } else if (value instanceof LoxCallable) {
-                variables.put(name.literal(), newValue);
-                return;
-            }
-        }
-
-        if (parent != null) {
-            parent.assign(name, newValue);
-            return;
-        }
-
-        throw new RuntimeError(name, "Undefined variable '" + name.literal() + "'");
-    }
-
-    public void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).variables.put(name.literal(), value);
-    }
-
     public Environment getParent() {
         return parent;
     }
@@ -91,9 +55,9 @@ public class Environment {
     @Override
     public String toString() {
         var sb = new StringBuilder();
-        this.variables.forEach((String key, Object value) -> {
-            sb.append(key).append(" -> ").append(value).append('\n');
-        });
+        for (int i = 0; i < size; ++i) {
+            sb.append(i).append(" -> ").append(values[i]).append('\n');
+        }
         return sb.toString();
     }
 }
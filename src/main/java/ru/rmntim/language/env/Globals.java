@@ -0,0 +1,72 @@
+package ru.rmntim.language.env;
+
+import ru.rmntim.language.interpreter.RuntimeError;
+import ru.rmntim.language.token.Symbols;
+import ru.rmntim.language.token.Token;
+
+import java.util.Arrays;
+
+/**
+ * Top-level variables. Unlike locals they are not resolved statically, so they are looked up by name,
+ * which is an index into a table of symbol ids.
+ */
+public class Globals {
+    private static final Object UNDEFINED = new Object();
+
+    private Object[] values = new Object[0];
+
+    public void define(String name, Object value) {
+        define(Symbols.intern(name), value);
+    }
+
+    public void define(Token name, Object value) {
+        define(name.symbol(), value);
+    }
+
+    private void define(int symbol, Object value) {
+        if (symbol >= values.length) {
+            var length = values.length;
+            values = Arrays.copyOf(values, Math.max(symbol + 1, Symbols.count()));
+            Arrays.fill(values, length, values.length, UNDEFINED);
+        }
+        values[symbol] = value;
+    }
+
+    public Object get(Token name) {
+        var value = lookUp(name.symbol());
+        if (value == UNDEFINED) {
+            throw new RuntimeError(name, "Undefined variable '" + name.literal() + "'");
+        }
+        if (value == Environment.UNINITIALIZED) {
+            throw new RuntimeError(name, "Uninitialized variable '" + name.literal() + "'");
+        }
+        return value;
+    }
+
+    public Object find(int symbol) {
+        var value = lookUp(symbol);
+        return value == UNDEFINED ? null : value;
+    }
+
+    public void assign(Token name, Object value) {
+        if (lookUp(name.symbol()) == UNDEFINED) {
+            throw new RuntimeError(name, "Undefined variable '" + name.literal() + "'");
+        }
+        values[name.symbol()] = value;
+    }
+
+    private Object lookUp(int symbol) {
+        return symbol < values.length ? values[symbol] : UNDEFINED;
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder();
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] != UNDEFINED) {
+                sb.append(Symbols.name(i)).append(" -> ").append(values[i]).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -7,5 +7,5 @@ import java.util.List;
 public interface LoxCallable {
     int arity();
 
-    Object call(Interpreter interpreter, List<Variable> arguments);
+    Object call(Interpreter interpreter, List<Object> arguments);
 }
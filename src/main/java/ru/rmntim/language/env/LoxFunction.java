@@ -1,43 +1,61 @@
 package ru.rmntim.language.env;
 
+import ru.rmntim.language.interpreter.Completion;
 import ru.rmntim.language.interpreter.Interpreter;
 import ru.rmntim.language.interpreter.LoxInstance;
-import ru.rmntim.language.interpreter.ReturnException;
 import ru.rmntim.language.interpreter.statement.Function;
 
 import java.util.List;
 
 public record LoxFunction(Function declaration, Environment closure, boolean isConstructor) implements LoxCallable {
-    public LoxFunction bind(LoxInstance instance) {
-        var environment = new Environment(closure);
-        environment.define("self", new Variable(instance));
-        return new LoxFunction(declaration, environment, isConstructor);
-    }
-
     @Override
     public int arity() {
         return declaration.getParams().size();
     }
 
     @Override
-    public Object call(Interpreter interpreter, List<Variable> arguments) {
-        var environment = new Environment(closure);
-        for (int i = 0; i < declaration.getParams().size(); ++i) {
-            environment.define(declaration.getParams().get(i).literal(), arguments.get(i));
-        }
-        try {
-            interpreter.executeBlock(declaration.getBody(), environment);
-        } catch (ReturnException returnValue) {
-            if (isConstructor) {
-                return closure.getAt(0, "self");
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return call(interpreter, null, arguments);
+    }
+
+    /**
+     * @param receiver instance the method is called on, {@code null} for plain functions.
+     *                 Methods keep it in the first slot of their scope, right before the parameters.
+     */
+    public Object call(Interpreter interpreter, LoxInstance receiver, List<Object> arguments) {
+        var function = this;
+        while (true) {
+            if (receiver == null) {
+                var compiled = interpreter.getJit().tryCall(function, arguments);
+                if (compiled != null) {
+                    return compiled;
+                }
             }
-            return returnValue.getValue();
-        }
 
-        if (isConstructor) {
-            return closure.getAt(0, "self");
+            var environment = new Environment(function.closure);
+            if (receiver != null) {
+                environment.define(receiver);
+            }
+            for (var argument : arguments) {
+                environment.define(argument);
+            }
+
+            var completion = interpreter.executeBlock(function.declaration.getBody(), environment);
+            if (function.isConstructor) {
+                return receiver;
+            }
+            if (completion != Completion.RETURN) {
+                return null;
+            }
+
+            var value = interpreter.takeReturnValue();
+            if (!(value instanceof TailCall tailCall)) {
+                return value;
+            }
+            function = tailCall.function();
+            receiver = tailCall.receiver();
+            arguments = tailCall.arguments();
         }
-        return null;
     }
 
     @Override
@@ -0,0 +1,23 @@
+package ru.rmntim.language.env;
+
+import ru.rmntim.language.interpreter.Interpreter;
+
+import java.util.List;
+
+/**
+ * A function implemented in Java. Natives don't depend on the engine that calls them,
+ * so they can be shared between the tree-walker and the VM.
+ */
+public abstract class NativeFunction implements LoxCallable {
+    public abstract Object call(List<Object> arguments);
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return call(arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+}
@@ -0,0 +1,187 @@
+package ru.rmntim.language.env;
+
+import ru.rmntim.language.interpreter.LoxArray;
+import ru.rmntim.language.interpreter.LoxMap;
+import ru.rmntim.language.interpreter.ValueError;
+import ru.rmntim.language.interpreter.Values;
+import ru.rmntim.language.util.Output;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class Natives {
+    private Natives() {
+    }
+
+    public static Map<String, NativeFunction> create() {
+        var natives = new LinkedHashMap<String, NativeFunction>();
+
+        natives.put("time", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 0;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                return (double) System.currentTimeMillis() / 1000.0;
+            }
+        });
+
+        natives.put("print", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 1;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                Output.println(Values.stringify(arguments.getFirst()));
+                return null;
+            }
+        });
+
+        natives.put("flush", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 0;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                Output.flush();
+                return null;
+            }
+        });
+
+        natives.put("length", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 1;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                if (arguments.getFirst() instanceof LoxMap map) {
+                    return (double) map.size();
+                }
+                return (double) array(arguments.getFirst()).size();
+            }
+        });
+
+        natives.put("push", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 2;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                array(arguments.getFirst()).push(arguments.get(1));
+                return null;
+            }
+        });
+
+        natives.put("pop", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 1;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                return array(arguments.getFirst()).pop();
+            }
+        });
+
+        natives.put("map", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 0;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                return new LoxMap();
+            }
+        });
+
+        natives.put("get", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 2;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                return map(arguments.getFirst()).get(arguments.get(1));
+            }
+        });
+
+        natives.put("set", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 3;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                map(arguments.getFirst()).put(arguments.get(1), arguments.get(2));
+                return null;
+            }
+        });
+
+        natives.put("has", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 2;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                return map(arguments.getFirst()).has(arguments.get(1));
+            }
+        });
+
+        natives.put("remove", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 2;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                return map(arguments.getFirst()).remove(arguments.get(1));
+            }
+        });
+
+        natives.put("keys", new NativeFunction() {
+            @Override
+            public int arity() {
+                return 1;
+            }
+
+            @Override
+            public Object call(List<Object> arguments) {
+                return map(arguments.getFirst()).keys();
+            }
+        });
+
+        return natives;
+    }
+
+    private static LoxMap map(Object value) {
+        if (!(value instanceof LoxMap map)) {
+            throw new ValueError("Expected a map but got " + Values.stringify(value));
+        }
+        return map;
+    }
+
+    private static LoxArray array(Object value) {
+        if (!(value instanceof LoxArray array)) {
+            throw new ValueError("Expected an array but got " + Values.stringify(value));
+        }
+        return array;
+    }
+}
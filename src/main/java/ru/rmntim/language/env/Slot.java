@@ -0,0 +1,7 @@
+package ru.rmntim.language.env;
+
+/**
+ * Resolved location of a local variable: how many scopes up it lives and its index in that scope.
+ */
+public record Slot(int depth, int index) {
+}
@@ -0,0 +1,13 @@
+package ru.rmntim.language.env;
+
+import ru.rmntim.language.interpreter.LoxInstance;
+
+import java.util.List;
+
+/**
+ * Call in tail position, e.g. `return f(x);`. Instead of calling the function right away the interpreter
+ * returns this to the enclosing {@link LoxFunction#call}, which runs it in place of the finished function.
+ * That way a chain of tail calls runs in constant Java stack.
+ */
+public record TailCall(LoxFunction function, LoxInstance receiver, List<Object> arguments) {
+}
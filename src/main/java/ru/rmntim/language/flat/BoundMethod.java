@@ -0,0 +1,8 @@
+package ru.rmntim.language.flat;
+
+record BoundMethod(FlatInstance receiver, FlatFunction method) {
+    @Override
+    public String toString() {
+        return method.toString();
+    }
+}
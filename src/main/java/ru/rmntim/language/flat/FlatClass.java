@@ -0,0 +1,25 @@
+package ru.rmntim.language.flat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+final class FlatClass {
+    final String name;
+    // Includes inherited methods, so lookups never walk the superclass chain
+    final Map<String, FlatFunction> methods = new HashMap<>();
+    final FlatFunction initializer;
+
+    FlatClass(String name, FlatClass superclass, Map<String, FlatFunction> ownMethods) {
+        this.name = name;
+        if (superclass != null) {
+            methods.putAll(superclass.methods);
+        }
+        methods.putAll(ownMethods);
+        this.initializer = methods.get("init");
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
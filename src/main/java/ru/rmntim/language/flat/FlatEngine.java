@@ -0,0 +1,374 @@
+package ru.rmntim.language.flat;
+
+import ru.rmntim.language.env.Environment;
+import ru.rmntim.language.env.Globals;
+import ru.rmntim.language.env.NativeFunction;
+import ru.rmntim.language.env.Natives;
+import ru.rmntim.language.interpreter.Completion;
+import ru.rmntim.language.interpreter.LoxArray;
+import ru.rmntim.language.interpreter.RuntimeError;
+import ru.rmntim.language.interpreter.ValueError;
+import ru.rmntim.language.interpreter.Values;
+import ru.rmntim.language.interpreter.statement.Statement;
+import ru.rmntim.language.token.Token;
+import ru.rmntim.language.util.ErrorReporter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static ru.rmntim.language.flat.FlatProgram.*;
+
+/**
+ * Runs programs laid out as a {@link FlatProgram}, walking the node arrays by index.
+ * <p>
+ * The semantics are those of the tree-walking {@code Interpreter}: scopes are {@link Environment}s
+ * addressed by the slots the resolver assigned, and globals live in {@link Globals}.
+ * What differs is the representation, a few primitive arrays per program instead of an object per node,
+ * which is much smaller and keeps the nodes of a function close to each other in memory.
+ * <p>
+ * Globals are kept between {@link #interpret(List)} calls, so the engine can back the REPL.
+ */
+public class FlatEngine {
+    private final Globals globals = new Globals();
+    private FlatProgram program;
+    // `null` at the top level, where declarations define globals
+    private Environment environment = null;
+    private Object returnValue = null;
+
+    public FlatEngine() {
+        Natives.create().forEach(globals::define);
+    }
+
+    public void interpret(List<Statement> statements) {
+        program = Flattener.flatten(statements);
+        try {
+            executeList(program.body);
+        } catch (RuntimeError error) {
+            ErrorReporter.runtimeError(error);
+        } finally {
+            environment = null;
+            program = null;
+        }
+    }
+
+    private Completion executeList(int list) {
+        var lists = program.lists;
+        var end = list + lists[list];
+        for (int i = list + 1; i <= end; ++i) {
+            var completion = execute(lists[i]);
+            if (completion != Completion.NORMAL) {
+                return completion;
+            }
+        }
+        return Completion.NORMAL;
+    }
+
+    private Completion execute(int node) {
+        var p = program;
+        switch (p.kinds[node]) {
+            case EXPRESSION -> evaluate(p.a[node]);
+            case DEFINE_LOCAL -> {
+                var value = p.a[node] == -1 ? Environment.UNINITIALIZED : evaluate(p.a[node]);
+                environment.define(value);
+            }
+            case DEFINE_GLOBAL -> {
+                var value = p.a[node] == -1 ? Environment.UNINITIALIZED : evaluate(p.a[node]);
+                globals.define((Token) p.constants[p.c[node]], value);
+            }
+            case BLOCK -> {
+                var previous = environment;
+                environment = new Environment(previous);
+                try {
+                    return executeList(p.a[node]);
+                } finally {
+                    environment = previous;
+                }
+            }
+            case IF -> {
+                if (Values.isTruthy(evaluate(p.a[node]))) {
+                    return execute(p.b[node]);
+                }
+                if (p.c[node] != -1) {
+                    return execute(p.c[node]);
+                }
+            }
+            case WHILE -> {
+                var condition = p.a[node];
+                var body = p.b[node];
+                while (Values.isTruthy(evaluate(condition))) {
+                    var completion = execute(body);
+                    if (completion == Completion.BREAK) {
+                        break;
+                    }
+                    if (completion == Completion.RETURN) {
+                        return completion;
+                    }
+                }
+            }
+            case BREAK -> {
+                return Completion.BREAK;
+            }
+            case RETURN -> {
+                returnValue = p.a[node] == -1 ? null : evaluate(p.a[node]);
+                return Completion.RETURN;
+            }
+            default -> throw new IllegalStateException("Not a statement: " + p.kinds[node]);
+        }
+        return Completion.NORMAL;
+    }
+
+    private Object evaluate(int node) {
+        var p = program;
+        return switch (p.kinds[node]) {
+            case LITERAL -> p.constants[p.a[node]];
+            case NEGATE -> {
+                if (evaluate(p.a[node]) instanceof Double value) {
+                    yield -value;
+                }
+                throw new RuntimeError(p.lines[node], "Operand must be a number");
+            }
+            case NOT -> !Values.isTruthy(evaluate(p.a[node]));
+            case ADD -> {
+                var left = evaluate(p.a[node]);
+                var right = evaluate(p.b[node]);
+                if (left instanceof Double l && right instanceof Double r) {
+                    yield l + r;
+                }
+                var sum = Values.add(left, right);
+                if (sum == null) {
+                    throw new RuntimeError(p.lines[node], "Operands must be either strings or numbers");
+                }
+                yield sum;
+            }
+            case SUBTRACT, MULTIPLY, DIVIDE, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> {
+                var left = evaluate(p.a[node]);
+                var right = evaluate(p.b[node]);
+                if (!(left instanceof Double l) || !(right instanceof Double r)) {
+                    throw new RuntimeError(p.lines[node], "Operand must be a number");
+                }
+                yield arithmetic(p.kinds[node], l, r);
+            }
+            case EQUAL -> Values.isEqual(evaluate(p.a[node]), evaluate(p.b[node]));
+            case NOT_EQUAL -> !Values.isEqual(evaluate(p.a[node]), evaluate(p.b[node]));
+            case AND -> {
+                var left = evaluate(p.a[node]);
+                yield Values.isTruthy(left) ? evaluate(p.b[node]) : left;
+            }
+            case OR -> {
+                var left = evaluate(p.a[node]);
+                yield Values.isTruthy(left) ? left : evaluate(p.b[node]);
+            }
+            case TERNARY -> Values.isTruthy(evaluate(p.a[node])) ? evaluate(p.b[node]) : evaluate(p.c[node]);
+            case GET_LOCAL -> {
+                var value = environment.getAt(p.a[node], p.b[node]);
+                if (value == Environment.UNINITIALIZED) {
+                    throw new RuntimeError(p.lines[node],
+                            "Uninitialized variable '" + p.constants[p.c[node]] + "'");
+                }
+                yield value;
+            }
+            case GET_GLOBAL -> globals.get((Token) p.constants[p.c[node]]);
+            case SET_LOCAL -> {
+                var value = evaluate(p.c[node]);
+                environment.assignAt(p.a[node], p.b[node], value);
+                yield value;
+            }
+            case SET_GLOBAL -> {
+                var value = evaluate(p.a[node]);
+                globals.assign((Token) p.constants[p.c[node]], value);
+                yield value;
+            }
+            case CALL -> {
+                var callee = evaluate(p.a[node]);
+                var list = p.b[node];
+                var arguments = new Object[p.lists[list]];
+                for (int i = 0; i < arguments.length; ++i) {
+                    arguments[i] = evaluate(p.lists[list + 1 + i]);
+                }
+                yield call(callee, arguments, p.lines[node]);
+            }
+            case GET_PROPERTY -> {
+                var name = (String) p.constants[p.c[node]];
+                if (!(evaluate(p.a[node]) instanceof FlatInstance instance)) {
+                    throw new RuntimeError(p.lines[node], "Only instances are allowed to have properties");
+                }
+                var field = instance.fields.get(name);
+                if (field != null || instance.fields.containsKey(name)) {
+                    yield field;
+                }
+                yield new BoundMethod(instance, findMethod(instance.class_, name, p.lines[node]));
+            }
+            case SET_PROPERTY -> {
+                if (!(evaluate(p.a[node]) instanceof FlatInstance instance)) {
+                    throw new RuntimeError(p.lines[node], "Only instances are allowed to have properties");
+                }
+                var value = evaluate(p.b[node]);
+                instance.fields.put((String) p.constants[p.c[node]], value);
+                yield value;
+            }
+            case SUPER -> {
+                var depth = p.a[node];
+                var superclass = (FlatClass) environment.getAt(depth, 0);
+                // `self` is always the first variable of the method's scope, which is right inside the `super` one
+                var object = (FlatInstance) environment.getAt(depth - 1, 0);
+                yield new BoundMethod(object, findMethod(superclass, (String) p.constants[p.c[node]], p.lines[node]));
+            }
+            case ARRAY -> {
+                var list = p.a[node];
+                var array = new LoxArray(p.lists[list]);
+                for (int i = 1; i <= p.lists[list]; ++i) {
+                    array.push(evaluate(p.lists[list + i]));
+                }
+                yield array;
+            }
+            case GET_INDEX -> {
+                var array = evaluate(p.a[node]);
+                var index = evaluate(p.b[node]);
+                if (!(array instanceof LoxArray loxArray)) {
+                    throw new RuntimeError(p.lines[node], "Only arrays can be indexed");
+                }
+                try {
+                    yield loxArray.get(index);
+                } catch (ValueError error) {
+                    throw new RuntimeError(p.lines[node], error.getMessage());
+                }
+            }
+            case SET_INDEX -> {
+                var array = evaluate(p.a[node]);
+                var index = evaluate(p.b[node]);
+                var value = evaluate(p.c[node]);
+                if (!(array instanceof LoxArray loxArray)) {
+                    throw new RuntimeError(p.lines[node], "Only arrays can be indexed");
+                }
+                try {
+                    loxArray.set(index, value);
+                } catch (ValueError error) {
+                    throw new RuntimeError(p.lines[node], error.getMessage());
+                }
+                yield value;
+            }
+            case FUNCTION -> new FlatFunction(p, node, environment, false);
+            case CLASS -> defineClass(node);
+            default -> throw new IllegalStateException("Not an expression: " + p.kinds[node]);
+        };
+    }
+
+    private static Object arithmetic(byte kind, double left, double right) {
+        return switch (kind) {
+            case SUBTRACT -> left - right;
+            case MULTIPLY -> left * right;
+            case DIVIDE -> left / right;
+            case GREATER -> left > right;
+            case GREATER_EQUAL -> left >= right;
+            case LESS -> left < right;
+            case LESS_EQUAL -> left <= right;
+            default -> throw new IllegalStateException("Not an arithmetic node: " + kind);
+        };
+    }
+
+    private FlatClass defineClass(int node) {
+        var p = program;
+        FlatClass superclass = null;
+        if (p.a[node] != -1) {
+            if (!(evaluate(p.a[node]) instanceof FlatClass class_)) {
+                throw new RuntimeError(p.lines[node], "Superclass must be a class");
+            }
+            superclass = class_;
+            environment = new Environment(environment);
+            environment.define(superclass);
+        }
+
+        var list = p.b[node];
+        var methods = new HashMap<String, FlatFunction>();
+        for (int i = 1; i <= p.lists[list]; ++i) {
+            var method = p.lists[list + i];
+            var name = (String) p.constants[p.c[method]];
+            methods.put(name, new FlatFunction(p, method, environment, name.equals("init")));
+        }
+
+        if (superclass != null) {
+            environment = environment.getParent();
+        }
+        return new FlatClass((String) p.constants[p.c[node]], superclass, methods);
+    }
+
+    private Object call(Object callee, Object[] arguments, int line) {
+        return switch (callee) {
+            case FlatFunction function -> {
+                checkArity(function.arity(), arguments, line);
+                yield call(function, null, arguments);
+            }
+            case BoundMethod bound -> {
+                checkArity(bound.method().arity(), arguments, line);
+                yield call(bound.method(), bound.receiver(), arguments);
+            }
+            case FlatClass class_ -> {
+                var instance = new FlatInstance(class_);
+                var initializer = class_.initializer;
+                checkArity(initializer == null ? 0 : initializer.arity(), arguments, line);
+                if (initializer != null) {
+                    call(initializer, instance, arguments);
+                }
+                yield instance;
+            }
+            case NativeFunction function -> {
+                checkArity(function.arity(), arguments, line);
+                try {
+                    yield function.call(Arrays.asList(arguments));
+                } catch (ValueError error) {
+                    throw new RuntimeError(line, error.getMessage());
+                }
+            }
+            case null, default -> throw new RuntimeError(line, "Call to a non-callable object");
+        };
+    }
+
+    /**
+     * @param receiver instance the method is called on, {@code null} for plain functions.
+     *                 Methods keep it in the first slot of their scope, right before the parameters.
+     */
+    private Object call(FlatFunction function, FlatInstance receiver, Object[] arguments) {
+        var callee = new Environment(function.closure());
+        if (receiver != null) {
+            callee.define(receiver);
+        }
+        for (var argument : arguments) {
+            callee.define(argument);
+        }
+
+        var previousProgram = program;
+        var previousEnvironment = environment;
+        program = function.program();
+        environment = callee;
+        try {
+            var completion = executeList(program.a[function.node()]);
+            if (function.isInitializer()) {
+                return receiver;
+            }
+            if (completion != Completion.RETURN) {
+                return null;
+            }
+            var value = returnValue;
+            returnValue = null;
+            return value;
+        } finally {
+            program = previousProgram;
+            environment = previousEnvironment;
+        }
+    }
+
+    private static void checkArity(int arity, Object[] arguments, int line) {
+        if (arguments.length != arity) {
+            throw new RuntimeError(line, "Expected " + arity + " arguments but got " + arguments.length);
+        }
+    }
+
+    private static FlatFunction findMethod(FlatClass class_, String name, int line) {
+        var method = class_.methods.get(name);
+        if (method == null) {
+            throw new RuntimeError(line, "Undefined property '" + name + "'");
+        }
+        return method;
+    }
+}
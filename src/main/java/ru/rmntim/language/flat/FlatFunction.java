@@ -0,0 +1,17 @@
+package ru.rmntim.language.flat;
+
+import ru.rmntim.language.env.Environment;
+
+/**
+ * A {@link FlatProgram#FUNCTION} node together with the environment it was created in.
+ */
+record FlatFunction(FlatProgram program, int node, Environment closure, boolean isInitializer) {
+    int arity() {
+        return program.b[node];
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + program.constants[program.c[node]] + ">";
+    }
+}
@@ -0,0 +1,18 @@
+package ru.rmntim.language.flat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+final class FlatInstance {
+    final FlatClass class_;
+    final Map<String, Object> fields = new HashMap<>();
+
+    FlatInstance(FlatClass class_) {
+        this.class_ = class_;
+    }
+
+    @Override
+    public String toString() {
+        return class_.name + " instance";
+    }
+}
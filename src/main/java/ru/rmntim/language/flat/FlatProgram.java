@@ -0,0 +1,119 @@
+package ru.rmntim.language.flat;
+
+import java.util.Arrays;
+
+/**
+ * A program stored as parallel primitive arrays instead of a tree of node objects.
+ * <p>
+ * A node is an index into the arrays: {@link #kinds} says what it is, {@link #a}, {@link #b} and {@link #c}
+ * hold its operands and {@link #lines} the line to report errors at. Operands are indices of child nodes,
+ * of {@link #constants} or of lists, or plain numbers like a slot, depending on the kind (see the constants
+ * below). A list is its length followed by its elements, stored in {@link #lists}.
+ * Missing children are {@code -1}.
+ */
+final class FlatProgram {
+    // Expressions
+    static final byte LITERAL = 0;          // a: constant
+    static final byte NEGATE = 1;           // a: operand
+    static final byte NOT = 2;              // a: operand
+    static final byte ADD = 3;              // a: left, b: right
+    static final byte SUBTRACT = 4;
+    static final byte MULTIPLY = 5;
+    static final byte DIVIDE = 6;
+    static final byte GREATER = 7;
+    static final byte GREATER_EQUAL = 8;
+    static final byte LESS = 9;
+    static final byte LESS_EQUAL = 10;
+    static final byte EQUAL = 11;
+    static final byte NOT_EQUAL = 12;
+    static final byte AND = 13;
+    static final byte OR = 14;
+    static final byte TERNARY = 15;         // a: condition, b: then, c: else
+    static final byte GET_LOCAL = 16;       // a: depth, b: slot, c: name constant
+    static final byte GET_GLOBAL = 17;      // c: name token constant
+    static final byte SET_LOCAL = 18;       // a: depth, b: slot, c: value
+    static final byte SET_GLOBAL = 19;      // a: value, c: name token constant
+    static final byte CALL = 20;            // a: callee, b: argument list
+    static final byte GET_PROPERTY = 21;    // a: object, c: name constant
+    static final byte SET_PROPERTY = 22;    // a: object, b: value, c: name constant
+    static final byte SUPER = 23;           // a: depth of the superclass, c: method name constant
+    static final byte FUNCTION = 24;        // a: body list, b: arity, c: name constant
+    static final byte CLASS = 25;           // a: superclass, b: method list, c: name constant
+    static final byte ARRAY = 26;           // a: element list
+    static final byte GET_INDEX = 27;       // a: array, b: index
+    static final byte SET_INDEX = 28;       // a: array, b: index, c: value
+    // Statements
+    static final byte EXPRESSION = 29;      // a: expression
+    static final byte DEFINE_LOCAL = 30;    // a: value
+    static final byte DEFINE_GLOBAL = 31;   // a: value, c: name token constant
+    static final byte BLOCK = 32;           // a: statement list
+    static final byte IF = 33;              // a: condition, b: then, c: else
+    static final byte WHILE = 34;           // a: condition, b: body
+    static final byte BREAK = 35;
+    static final byte RETURN = 36;          // a: value
+
+    byte[] kinds = new byte[64];
+    int[] a = new int[64];
+    int[] b = new int[64];
+    int[] c = new int[64];
+    int[] lines = new int[64];
+    int size = 0;
+
+    Object[] constants = new Object[16];
+    int constantCount = 0;
+
+    int[] lists = new int[64];
+    int listsSize = 0;
+
+    // List of the top-level statements
+    int body = -1;
+
+    int add(byte kind, int a, int b, int c, int line) {
+        if (size == kinds.length) {
+            var capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            this.a = Arrays.copyOf(this.a, capacity);
+            this.b = Arrays.copyOf(this.b, capacity);
+            this.c = Arrays.copyOf(this.c, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        kinds[size] = kind;
+        this.a[size] = a;
+        this.b[size] = b;
+        this.c[size] = c;
+        lines[size] = line;
+        return size++;
+    }
+
+    int constant(Object value) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+        }
+        constants[constantCount] = value;
+        return constantCount++;
+    }
+
+    int list(int[] elements, int count) {
+        if (listsSize + count + 1 > lists.length) {
+            lists = Arrays.copyOf(lists, Math.max(lists.length * 2, listsSize + count + 1));
+        }
+        var list = listsSize;
+        lists[listsSize++] = count;
+        System.arraycopy(elements, 0, lists, listsSize, count);
+        listsSize += count;
+        return list;
+    }
+
+    /**
+     * Drops the spare capacity left after building.
+     */
+    void trim() {
+        kinds = Arrays.copyOf(kinds, size);
+        a = Arrays.copyOf(a, size);
+        b = Arrays.copyOf(b, size);
+        c = Arrays.copyOf(c, size);
+        lines = Arrays.copyOf(lines, size);
+        constants = Arrays.copyOf(constants, constantCount);
+        lists = Arrays.copyOf(lists, listsSize);
+    }
+}
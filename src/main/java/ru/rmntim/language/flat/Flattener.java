@@ -0,0 +1,274 @@
+package ru.rmntim.language.flat;
+
+import ru.rmntim.language.interpreter.expression.*;
+import ru.rmntim.language.interpreter.statement.Class;
+import ru.rmntim.language.interpreter.statement.*;
+import ru.rmntim.language.token.Token;
+
+import java.util.List;
+
+import static ru.rmntim.language.flat.FlatProgram.*;
+
+/**
+ * Lays resolved statements out as a {@link FlatProgram}, children before their parents.
+ * <p>
+ * Whether a declaration defines a global is decided here from how deep it is nested,
+ * the same way the tree-walker decides it from its current environment.
+ */
+final class Flattener implements Expression.Visitor<Integer>, Statement.Visitor<Integer> {
+    private final FlatProgram program = new FlatProgram();
+    private int depth = 0;
+
+    private Flattener() {
+    }
+
+    static FlatProgram flatten(List<Statement> statements) {
+        var flattener = new Flattener();
+        var program = flattener.program;
+        program.body = flattener.statements(statements);
+        program.trim();
+        return program;
+    }
+
+    @Override
+    public Integer visit(Binary expression) {
+        var kind = switch (expression.getOperator().type()) {
+            case PLUS -> ADD;
+            case MINUS -> SUBTRACT;
+            case STAR -> MULTIPLY;
+            case SLASH -> DIVIDE;
+            case GREATER -> GREATER;
+            case GREATER_EQUAL -> GREATER_EQUAL;
+            case LESS -> LESS;
+            case LESS_EQUAL -> LESS_EQUAL;
+            case EQUAL_EQUAL -> EQUAL;
+            case BANG_EQUAL -> NOT_EQUAL;
+            default -> throw new IllegalArgumentException("Unexpected operator " + expression.getOperator());
+        };
+        var left = flatten(expression.getLeft());
+        var right = flatten(expression.getRight());
+        return program.add(kind, left, right, -1, expression.getOperator().line());
+    }
+
+    @Override
+    public Integer visit(Unary expression) {
+        var kind = switch (expression.getOperator().type()) {
+            case MINUS -> NEGATE;
+            case BANG -> NOT;
+            default -> throw new IllegalArgumentException("Unexpected operator " + expression.getOperator());
+        };
+        return program.add(kind, flatten(expression.getRight()), -1, -1, expression.getOperator().line());
+    }
+
+    @Override
+    public Integer visit(Grouping expression) {
+        return flatten(expression.getSubExpression());
+    }
+
+    @Override
+    public Integer visit(Literal expression) {
+        return program.add(LITERAL, program.constant(expression.getValue()), -1, -1, 0);
+    }
+
+    @Override
+    public Integer visit(Variable expression) {
+        var name = expression.getName();
+        var slot = expression.getSlot();
+        if (slot == null) {
+            return program.add(GET_GLOBAL, -1, -1, program.constant(name), name.line());
+        }
+        return program.add(GET_LOCAL, slot.depth(), slot.index(), program.constant(name.literal()), name.line());
+    }
+
+    @Override
+    public Integer visit(Assignment expression) {
+        var name = expression.getName();
+        var value = flatten(expression.getValue());
+        var slot = expression.getSlot();
+        if (slot == null) {
+            return program.add(SET_GLOBAL, value, -1, program.constant(name), name.line());
+        }
+        return program.add(SET_LOCAL, slot.depth(), slot.index(), value, name.line());
+    }
+
+    @Override
+    public Integer visit(Ternary expression) {
+        var condition = flatten(expression.getCondition());
+        var thenBranch = flatten(expression.getThenBranch());
+        var elseBranch = flatten(expression.getElseBranch());
+        return program.add(TERNARY, condition, thenBranch, elseBranch, 0);
+    }
+
+    @Override
+    public Integer visit(Logical expression) {
+        var kind = switch (expression.getOperator().type()) {
+            case AND -> AND;
+            case OR -> OR;
+            default -> throw new IllegalArgumentException("Unexpected operator " + expression.getOperator());
+        };
+        var left = flatten(expression.getLeft());
+        var right = flatten(expression.getRight());
+        return program.add(kind, left, right, -1, expression.getOperator().line());
+    }
+
+    @Override
+    public Integer visit(Call expression) {
+        var callee = flatten(expression.getCalee());
+        var arguments = expressions(expression.getArguments());
+        return program.add(CALL, callee, arguments, -1, expression.getParen().line());
+    }
+
+    @Override
+    public Integer visit(Get expression) {
+        var name = expression.getName();
+        var object = flatten(expression.getObject());
+        return program.add(GET_PROPERTY, object, -1, program.constant(name.literal()), name.line());
+    }
+
+    @Override
+    public Integer visit(Set expression) {
+        var name = expression.getName();
+        var object = flatten(expression.getObject());
+        var value = flatten(expression.getValue());
+        return program.add(SET_PROPERTY, object, value, program.constant(name.literal()), name.line());
+    }
+
+    @Override
+    public Integer visit(Self expression) {
+        var keyword = expression.getKeyword();
+        var slot = expression.getSlot();
+        return program.add(GET_LOCAL, slot.depth(), slot.index(), program.constant(keyword.literal()), keyword.line());
+    }
+
+    @Override
+    public Integer visit(Super expression) {
+        var method = expression.getMethod();
+        var slot = expression.getSlot();
+        return program.add(SUPER, slot.depth(), -1, program.constant(method.literal()), method.line());
+    }
+
+    @Override
+    public Integer visit(ArrayLiteral expression) {
+        return program.add(ARRAY, expressions(expression.getElements()), -1, -1, 0);
+    }
+
+    @Override
+    public Integer visit(GetIndex expression) {
+        var array = flatten(expression.getArray());
+        var index = flatten(expression.getIndex());
+        return program.add(GET_INDEX, array, index, -1, expression.getBracket().line());
+    }
+
+    @Override
+    public Integer visit(SetIndex expression) {
+        var array = flatten(expression.getArray());
+        var index = flatten(expression.getIndex());
+        var value = flatten(expression.getValue());
+        return program.add(SET_INDEX, array, index, value, expression.getBracket().line());
+    }
+
+    @Override
+    public Integer visit(Expr statement) {
+        var expression = flatten(statement.getExpression());
+        return program.add(EXPRESSION, expression, -1, -1, 0);
+    }
+
+    @Override
+    public Integer visit(Let statement) {
+        var initializer = statement.getInitializer();
+        return define(statement.getName(), initializer == null ? -1 : flatten(initializer));
+    }
+
+    @Override
+    public Integer visit(Block statement) {
+        ++depth;
+        var statements = statements(statement.getStatements());
+        --depth;
+        return program.add(BLOCK, statements, -1, -1, 0);
+    }
+
+    @Override
+    public Integer visit(If statement) {
+        var condition = flatten(statement.getCondition());
+        var thenBranch = flatten(statement.getThenBranch());
+        var elseBranch = statement.getElseBranch().map(this::flatten).orElse(-1);
+        return program.add(IF, condition, thenBranch, elseBranch, 0);
+    }
+
+    @Override
+    public Integer visit(While statement) {
+        var condition = flatten(statement.getCondition());
+        var body = flatten(statement.getBody());
+        return program.add(WHILE, condition, body, -1, 0);
+    }
+
+    @Override
+    public Integer visit(Break statement) {
+        return program.add(BREAK, -1, -1, -1, statement.getName().line());
+    }
+
+    @Override
+    public Integer visit(Function statement) {
+        return define(statement.getName(), function(statement));
+    }
+
+    @Override
+    public Integer visit(Return statement) {
+        var value = statement.getValue().map(this::flatten).orElse(-1);
+        return program.add(RETURN, value, -1, -1, statement.getKeyword().line());
+    }
+
+    @Override
+    public Integer visit(Class statement) {
+        var name = statement.getName();
+        var superclass = statement.getSuperclass().map(this::flatten).orElse(-1);
+        var line = statement.getSuperclass().map(variable -> variable.getName().line()).orElse(name.line());
+
+        var methods = new int[statement.getMethods().size()];
+        for (int i = 0; i < methods.length; ++i) {
+            methods[i] = function(statement.getMethods().get(i));
+        }
+        var class_ = program.add(CLASS, superclass, program.list(methods, methods.length),
+                program.constant(name.literal()), line);
+        return define(name, class_);
+    }
+
+    private int function(Function function) {
+        var name = function.getName();
+        ++depth;
+        var body = statements(function.getBody());
+        --depth;
+        return program.add(FUNCTION, body, function.getParams().size(), program.constant(name.literal()), name.line());
+    }
+
+    private int define(Token name, int value) {
+        if (depth == 0) {
+            return program.add(DEFINE_GLOBAL, value, -1, program.constant(name), name.line());
+        }
+        return program.add(DEFINE_LOCAL, value, -1, -1, name.line());
+    }
+
+    private int statements(List<? extends Statement> statements) {
+        var elements = new int[statements.size()];
+        for (int i = 0; i < elements.length; ++i) {
+            elements[i] = flatten(statements.get(i));
+        }
+        return program.list(elements, elements.length);
+    }
+
+    private int expressions(List<Expression> expressions) {
+        var elements = new int[expressions.size()];
+        for (int i = 0; i < elements.length; ++i) {
+            elements[i] = flatten(expressions.get(i));
+        }
+        return program.list(elements, elements.length);
+    }
+
+    private int flatten(Expression expression) {
+        return expression.accept(this);
+    }
+
+    private int flatten(Statement statement) {
+        return statement.accept(this);
+    }
+}
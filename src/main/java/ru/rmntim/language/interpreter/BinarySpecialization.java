@@ -0,0 +1,262 @@
+package ru.rmntim.language.interpreter;
+
+import ru.rmntim.language.interpreter.expression.Binary;
+import ru.rmntim.language.token.Token;
+
+/**
+ * Implementation of a binary operator, specialized for the operand types a node has seen.
+ * <p>
+ * Every node starts {@link #UNINITIALIZED} and picks a specialization on its first execution.
+ * A specialization that meets operands it doesn't handle rewrites the node to {@link #GENERIC} for good,
+ * so nodes with unstable types don't keep switching back and forth.
+ */
+public enum BinarySpecialization {
+    UNINITIALIZED {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            var specialization = select(expression.getOperator(), left, right);
+            expression.setSpecialization(specialization);
+            return specialization.execute(expression, left, right);
+        }
+    },
+    NUMBER_ADD {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l + r;
+            }
+            return deoptimize(expression, left, right);
+        }
+
+        @Override
+        public double executeDouble(double l, double r) {
+            return l + r;
+        }
+    },
+    NUMBER_SUBTRACT {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l - r;
+            }
+            return deoptimize(expression, left, right);
+        }
+
+        @Override
+        public double executeDouble(double l, double r) {
+            return l - r;
+        }
+    },
+    NUMBER_MULTIPLY {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l * r;
+            }
+            return deoptimize(expression, left, right);
+        }
+
+        @Override
+        public double executeDouble(double l, double r) {
+            return l * r;
+        }
+    },
+    NUMBER_DIVIDE {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l / r;
+            }
+            return deoptimize(expression, left, right);
+        }
+
+        @Override
+        public double executeDouble(double l, double r) {
+            return l / r;
+        }
+    },
+    NUMBER_GREATER {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l > r;
+            }
+            return deoptimize(expression, left, right);
+        }
+
+        @Override
+        public boolean compareDouble(double l, double r) {
+            return l > r;
+        }
+    },
+    NUMBER_GREATER_EQUAL {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l >= r;
+            }
+            return deoptimize(expression, left, right);
+        }
+
+        @Override
+        public boolean compareDouble(double l, double r) {
+            return l >= r;
+        }
+    },
+    NUMBER_LESS {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l < r;
+            }
+            return deoptimize(expression, left, right);
+        }
+
+        @Override
+        public boolean compareDouble(double l, double r) {
+            return l < r;
+        }
+    },
+    NUMBER_LESS_EQUAL {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            if (left instanceof Double l && right instanceof Double r) {
+                return l <= r;
+            }
+            return deoptimize(expression, left, right);
+        }
+
+        @Override
+        public boolean compareDouble(double l, double r) {
+            return l <= r;
+        }
+    },
+    STRING_CONCAT {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            if (left instanceof CharSequence l && right instanceof CharSequence r) {
+                return Rope.concat(l, r);
+            }
+            return deoptimize(expression, left, right);
+        }
+    },
+    // Equality is defined for any pair of values, so it never needs to deoptimize
+    EQUAL {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            return Values.isEqual(left, right);
+        }
+    },
+    NOT_EQUAL {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            return !Values.isEqual(left, right);
+        }
+    },
+    GENERIC {
+        @Override
+        public Object execute(Binary expression, Object left, Object right) {
+            var operator = expression.getOperator();
+            return switch (operator.type()) {
+                case MINUS -> {
+                    checkNumberOperands(operator, left, right);
+                    yield (double) left - (double) right;
+                }
+                case SLASH -> {
+                    checkNumberOperands(operator, left, right);
+                    yield (double) left / (double) right;
+                }
+                case STAR -> {
+                    checkNumberOperands(operator, left, right);
+                    yield (double) left * (double) right;
+                }
+                case PLUS -> {
+                    var sum = Values.add(left, right);
+                    if (sum == null) {
+                        throw new RuntimeError(operator, "Operands must be either strings or numbers");
+                    }
+                    yield sum;
+                }
+                case GREATER -> {
+                    checkNumberOperands(operator, left, right);
+                    yield (double) left > (double) right;
+                }
+                case GREATER_EQUAL -> {
+                    checkNumberOperands(operator, left, right);
+                    yield (double) left >= (double) right;
+                }
+                case LESS -> {
+                    checkNumberOperands(operator, left, right);
+                    yield (double) left < (double) right;
+                }
+                case LESS_EQUAL -> {
+                    checkNumberOperands(operator, left, right);
+                    yield (double) left <= (double) right;
+                }
+                case BANG_EQUAL -> !Values.isEqual(left, right);
+                case EQUAL_EQUAL -> Values.isEqual(left, right);
+                default -> null;
+            };
+        }
+    };
+
+    public abstract Object execute(Binary expression, Object left, Object right);
+
+    /**
+     * Arithmetic specializations can also run on unboxed operands, see {@link Interpreter#evaluateDouble}.
+     */
+    public boolean isArithmetic() {
+        return switch (this) {
+            case NUMBER_ADD, NUMBER_SUBTRACT, NUMBER_MULTIPLY, NUMBER_DIVIDE -> true;
+            default -> false;
+        };
+    }
+
+    public boolean isComparison() {
+        return switch (this) {
+            case NUMBER_GREATER, NUMBER_GREATER_EQUAL, NUMBER_LESS, NUMBER_LESS_EQUAL -> true;
+            default -> false;
+        };
+    }
+
+    public double executeDouble(double left, double right) {
+        throw new IllegalStateException(this + " is not an arithmetic specialization");
+    }
+
+    public boolean compareDouble(double left, double right) {
+        throw new IllegalStateException(this + " is not a comparison specialization");
+    }
+
+    private static BinarySpecialization select(Token operator, Object left, Object right) {
+        var numbers = left instanceof Double && right instanceof Double;
+        return switch (operator.type()) {
+            case PLUS -> {
+                if (numbers) {
+                    yield NUMBER_ADD;
+                }
+                yield left instanceof CharSequence && right instanceof CharSequence ? STRING_CONCAT : GENERIC;
+            }
+            case MINUS -> numbers ? NUMBER_SUBTRACT : GENERIC;
+            case STAR -> numbers ? NUMBER_MULTIPLY : GENERIC;
+            case SLASH -> numbers ? NUMBER_DIVIDE : GENERIC;
+            case GREATER -> numbers ? NUMBER_GREATER : GENERIC;
+            case GREATER_EQUAL -> numbers ? NUMBER_GREATER_EQUAL : GENERIC;
+            case LESS -> numbers ? NUMBER_LESS : GENERIC;
+            case LESS_EQUAL -> numbers ? NUMBER_LESS_EQUAL : GENERIC;
+            case EQUAL_EQUAL -> EQUAL;
+            case BANG_EQUAL -> NOT_EQUAL;
+            default -> GENERIC;
+        };
+    }
+
+    private static Object deoptimize(Binary expression, Object left, Object right) {
+        expression.setSpecialization(GENERIC);
+        return GENERIC.execute(expression, left, right);
+    }
+
+    private static void checkNumberOperands(Token operator, Object left, Object right) {
+        if (!(left instanceof Double) || !(right instanceof Double)) {
+            throw new RuntimeError(operator, "Operand must be a number");
+        }
+    }
+}
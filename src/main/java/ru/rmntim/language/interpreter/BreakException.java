@@ -1,7 +0,0 @@
-package ru.rmntim.language.interpreter;
-
-public class BreakException extends RuntimeException {
-    public BreakException() {
-        super(null, null, false, false);
-    }
-}
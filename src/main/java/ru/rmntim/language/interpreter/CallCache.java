@@ -0,0 +1,40 @@
+package ru.rmntim.language.interpreter;
+
+import ru.rmntim.language.env.LoxFunction;
+
+/**
+ * Inline cache of a call node: the last callee the node has called, with its arity already checked.
+ * The number of arguments of a call never changes, so while the callee stays the same
+ * the node can jump straight to the function to run.
+ * <p>
+ * The callee is a function or a class for plain calls, and the receiver's class for method calls.
+ */
+public final class CallCache {
+    private Object callee = null;
+    private LoxFunction target = null;
+    private boolean constructs = false;
+
+    Object getCallee() {
+        return callee;
+    }
+
+    /**
+     * @return the function, the initializer of the class (possibly {@code null}) or the method
+     */
+    LoxFunction getTarget() {
+        return target;
+    }
+
+    /**
+     * @return whether the callee is a class, so the call creates an instance
+     */
+    boolean constructs() {
+        return constructs;
+    }
+
+    void remember(Object callee, LoxFunction target, boolean constructs) {
+        this.callee = callee;
+        this.target = target;
+        this.constructs = constructs;
+    }
+}
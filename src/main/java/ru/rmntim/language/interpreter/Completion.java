@@ -0,0 +1,14 @@
+package ru.rmntim.language.interpreter;
+
+/**
+ * How a statement finished executing. `return` and `break` propagate as ordinary return values
+ * instead of exceptions, so the JVM can inline the call paths they pass through.
+ */
+public enum Completion {
+    NORMAL,
+    BREAK,
+    /**
+     * The returned value is handed over through {@link Interpreter#takeReturnValue()}.
+     */
+    RETURN,
+}
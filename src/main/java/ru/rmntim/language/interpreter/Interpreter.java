@@ -1,62 +1,33 @@
 package ru.rmntim.language.interpreter;
 
+import ru.rmntim.language.env.BoundMethod;
 import ru.rmntim.language.env.Environment;
+import ru.rmntim.language.env.Globals;
 import ru.rmntim.language.env.LoxCallable;
 import ru.rmntim.language.env.LoxFunction;
-import ru.rmntim.language.env.Variable;
+import ru.rmntim.language.env.Natives;
+import ru.rmntim.language.env.TailCall;
+import ru.rmntim.language.jit.Jit;
 import ru.rmntim.language.interpreter.expression.*;
 import ru.rmntim.language.interpreter.statement.Class;
 import ru.rmntim.language.interpreter.statement.*;
 import ru.rmntim.language.token.Token;
-import ru.rmntim.language.token.TokenType;
 import ru.rmntim.language.util.ErrorReporter;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
-public class Interpreter implements Expression.Visitor<Object>, Statement.Visitor<Void> {
-    private final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expression, Integer> locals = new HashMap<>();
+public class Interpreter implements Expression.Visitor<Object>, Statement.Visitor<Completion> {
+    private final Globals globals = new Globals();
+    // `null` while executing top-level code: declarations there go to `globals`
+    private Environment environment = null;
+    private final Jit jit = new Jit(this);
+    // Set by `return` until the function call picks it up
+    private Object returnValue = null;
 
     public Interpreter() {
-        globals.define("time", new LoxCallable() {
-
-            @Override
-            public int arity() {
-                return 0;
-            }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Variable> arguments) {
-                return (double) System.currentTimeMillis() / 1000.0;
-            }
-
-            @Override
-            public String toString() {
-                return "<native fn>";
-            }
-        });
-
-        globals.define("print", new LoxCallable() {
-            @Override
-            public int arity() {
-                return 1;
-            }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Variable> arguments) {
-                System.out.println(stringify(arguments.getFirst()));
-                return null;
-            }
-
-            @Override
-            public String toString() {
-                return "<native fn>";
-            }
-        });
+        Natives.create().forEach(globals::define);
     }
 
     public void interpret(final List<Statement> statements) {
@@ -69,26 +40,6 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
         }
     }
 
-    private String stringify(Object value) {
-        if (value instanceof Variable) {
-            value = ((Variable) value).getValue();
-        }
-
-        if (value == null) {
-            return "nil";
-        }
-
-        if (value instanceof Double) {
-            var text = value.toString();
-            if (text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
-            }
-            return text;
-        }
-
-        return value.toString();
-    }
-
     @Override
     public Object visit(Literal expression) {
         return expression.getValue();
@@ -101,79 +52,35 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
 
     @Override
     public Object visit(Unary expression) {
-        var right = evaluate(expression.getRight());
-
-        return switch (expression.getOperator().type()) {
-            case MINUS -> {
-                checkNumberOperands(expression.getOperator(), right);
-                yield -(double) right;
+        if (expression.getSpecialization() == UnarySpecialization.NUMBER_NEGATE) {
+            try {
+                return negate(expression);
+            } catch (UnexpectedResultException e) {
+                return e.getResult();
             }
-            case BANG -> !isTruthy(right);
-            default -> null;
-        };
+        }
+        var right = evaluate(expression.getRight());
+        return expression.getSpecialization().execute(expression, right);
     }
 
     @Override
     public Object visit(Binary expression) {
-        var left = evaluate(expression.getLeft());
-        var right = evaluate(expression.getRight());
-
-        if (left instanceof Variable) {
-            left = ((Variable) left).getValue();
+        var specialization = expression.getSpecialization();
+        if (specialization.isArithmetic()) {
+            // The operands stay unboxed, only the result is boxed
+            try {
+                return arithmetic(expression, specialization);
+            } catch (UnexpectedResultException e) {
+                return e.getResult();
+            }
         }
-        if (right instanceof Variable) {
-            right = ((Variable) right).getValue();
+        if (specialization.isComparison()) {
+            return compare(expression, specialization);
         }
 
-        return switch (expression.getOperator().type()) {
-            case MINUS -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                yield (double) left - (double) right;
-            }
-            case SLASH -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                yield (double) left / (double) right;
-            }
-            case STAR -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                yield (double) left * (double) right;
-            }
-            case PLUS -> {
-                if (left instanceof Double && right instanceof Double) {
-                    yield (double) left + (double) right;
-                }
-                if (left instanceof String && right instanceof String) {
-                    yield left + (String) right;
-                }
-                if (left instanceof String) {
-                    yield left + stringify(right);
-                }
-                if (right instanceof String) {
-                    yield stringify(left) + right;
-                }
-
-                throw new RuntimeError(expression.getOperator(), "Operands must be either strings or numbers");
-            }
-            case GREATER -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                yield (double) left > (double) right;
-            }
-            case GREATER_EQUAL -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                yield (double) left >= (double) right;
-            }
-            case LESS -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                yield (double) left < (double) right;
-            }
-            case LESS_EQUAL -> {
-                checkNumberOperands(expression.getOperator(), left, right);
-                yield (double) left <= (double) right;
-            }
-            case BANG_EQUAL -> !isEqual(left, right);
-            case EQUAL_EQUAL -> isEqual(left, right);
-            default -> null;
-        };
+        var left = evaluate(expression.getLeft());
+        var right = evaluate(expression.getRight());
+        return specialization.execute(expression, left, right);
     }
 
     @Override
@@ -185,9 +92,9 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
     public Object visit(Assignment expression) {
         var value = evaluate(expression.getValue());
 
-        var distance = locals.get(expression);
-        if (distance != null) {
-            environment.assignAt(distance, expression.getName(), value);
+        var slot = expression.getSlot();
+        if (slot != null) {
+            environment.assignAt(slot.depth(), slot.index(), value);
         } else {
             globals.assign(expression.getName(), value);
         }
@@ -197,7 +104,7 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
 
     @Override
     public Object visit(Ternary expression) {
-        if (isTruthy(evaluate(expression.getCondition()))) {
+        if (Values.isTruthy(evaluate(expression.getCondition()))) {
             return evaluate(expression.getThenBranch());
         } else {
             return evaluate(expression.getElseBranch());
@@ -207,51 +114,150 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
     @Override
     public Object visit(Logical expression) {
         var left = evaluate(expression.getLeft());
+        return expression.getSpecialization().execute(this, expression, left);
+    }
 
-        if (expression.getOperator().type() == TokenType.OR) {
-            if (isTruthy(left)) {
-                return left;
+    @Override
+    public Object visit(Call expression) {
+        if (expression.getCalee() instanceof Get get) {
+            return invoke(get, expression);
+        }
+        if (expression.getCalee() instanceof Super super_) {
+            return invokeSuper(super_, expression);
+        }
+
+        var callee = evaluate(expression.getCalee());
+        var arguments = evaluateArguments(expression);
+
+        // An empty cache holds a null callee, so nil must not count as a hit
+        var cache = expression.getCache();
+        if (callee == null || callee != cache.getCallee()) {
+            if (callee instanceof LoxFunction function) {
+                checkArity(function, arguments, expression.getParen());
+                cache.remember(function, function, false);
+            } else if (callee instanceof LoxClass class_) {
+                checkArity(class_, arguments, expression.getParen());
+                cache.remember(class_, class_.findMethod("init"), true);
+            } else {
+                return call(callee, arguments, expression);
             }
-        } else {
-            if (!isTruthy(left)) {
-                return left;
+        }
+
+        var target = cache.getTarget();
+        if (cache.constructs()) {
+            var instance = new LoxInstance((LoxClass) callee);
+            if (target != null) {
+                target.call(this, instance, arguments);
             }
+            return instance;
+        }
+        return call(target, null, arguments, expression);
+    }
+
+    /**
+     * Calls `object.name(...)` without binding the method to the object first.
+     */
+    private Object invoke(Get callee, Call expression) {
+        var object = evaluate(callee.getObject());
+        if (!(object instanceof LoxInstance instance)) {
+            throw new RuntimeError(callee.getName(),
+                    "Only instances are allowed to have properties");
+        }
+
+        var index = callee.getCache().read(instance.getShape());
+        if (index != -1) {
+            var field = instance.get(callee.getName(), index);
+            return call(field, evaluateArguments(expression), expression);
+        }
+
+        var class_ = instance.getLoxClass();
+        var cache = expression.getCache();
+        if (class_ == cache.getCallee()) {
+            return call(cache.getTarget(), instance, evaluateArguments(expression), expression);
         }
 
-        return evaluate(expression.getRight());
+        var method = findMethod(class_, callee.getName());
+        var arguments = evaluateArguments(expression);
+        checkArity(method, arguments, expression.getParen());
+        cache.remember(class_, method, false);
+        return call(method, instance, arguments, expression);
     }
 
-    @Override
-    public Object visit(Call expression) {
-        var callee = evaluate(expression.getCalee());
+    private Object invokeSuper(Super callee, Call expression) {
+        var slot = callee.getSlot();
+        var superclass = (LoxClass) environment.getAt(slot.depth(), slot.index());
+        var object = (LoxInstance) environment.getAt(slot.depth() - 1, 0);
+
+        var cache = expression.getCache();
+        if (superclass == cache.getCallee()) {
+            return call(cache.getTarget(), object, evaluateArguments(expression), expression);
+        }
+
+        var method = findMethod(superclass, callee.getMethod());
+        var arguments = evaluateArguments(expression);
+        checkArity(method, arguments, expression.getParen());
+        cache.remember(superclass, method, false);
+        return call(method, object, arguments, expression);
+    }
 
-        var arguments = new ArrayList<Variable>();
+    private List<Object> evaluateArguments(Call expression) {
+        var arguments = new ArrayList<Object>(expression.getArguments().size());
         for (var argument : expression.getArguments()) {
-            arguments.add(new Variable(evaluate(argument)));
+            arguments.add(evaluate(argument));
         }
+        return arguments;
+    }
 
+    private Object call(Object callee, List<Object> arguments, Call expression) {
         if (!(callee instanceof LoxCallable function)) {
             throw new RuntimeError(expression.getParen(),
                     "Call to a non-callable object");
         }
 
+        checkArity(function, arguments, expression.getParen());
+        if (function instanceof BoundMethod bound) {
+            return call(bound.method(), bound.receiver(), arguments, expression);
+        }
+        try {
+            return function.call(this, arguments);
+        } catch (ValueError error) {
+            throw new RuntimeError(expression.getParen(), error.getMessage());
+        }
+    }
+
+    /**
+     * Calls a function whose arity is already checked, or defers the call if it's a tail call.
+     */
+    private Object call(LoxFunction function, LoxInstance receiver, List<Object> arguments, Call expression) {
+        if (expression.isTailCall()) {
+            return new TailCall(function, receiver, arguments);
+        }
+        return function.call(this, receiver, arguments);
+    }
+
+    private static void checkArity(LoxCallable function, List<Object> arguments, Token paren) {
         if (arguments.size() != function.arity()) {
-            throw new RuntimeError(expression.getParen(),
+            throw new RuntimeError(paren,
                     "Expected " + function.arity() +
                             " arguments but got " + arguments.size());
         }
+    }
 
-        return function.call(this, arguments);
+    private static LoxFunction findMethod(LoxClass class_, Token name) {
+        var method = class_.findMethod(name.literal());
+        if (method == null) {
+            throw new RuntimeError(name,
+                    "Undefined property '" + name.literal() + "'");
+        }
+        return method;
     }
 
     @Override
     public Object visit(Get expression) {
         var object = evaluate(expression.getObject());
-        if (object instanceof Variable) {
-            object = ((Variable) object).getValue();
-        }
         if (object instanceof LoxInstance instance) {
-            return instance.get(expression.getName());
+            var index = expression.getCache().read(instance.getShape());
+            return instance.get(expression.getName(), index);
         }
         throw new RuntimeError(expression.getName(),
                 "Only instances are allowed to have properties");
@@ -260,12 +266,11 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
     @Override
     public Object visit(Set expression) {
         var object = evaluate(expression.getObject());
-        if (object instanceof Variable) {
-            object = ((Variable) object).getValue();
-        }
         if (object instanceof LoxInstance instance) {
             var value = evaluate(expression.getValue());
-            instance.set(expression.getName(), value);
+            // The value may have added fields to the instance, so its shape is only checked now
+            var entry = expression.getCache().write(instance.getShape());
+            instance.set(entry.target(), entry.index(), value);
             return value;
         }
 
@@ -280,83 +285,120 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
 
     @Override
     public Object visit(Super expression) {
-        var distance = locals.get(expression);
-        var superclass = (LoxClass) environment.getAt(distance, "super");
-        var object = (LoxInstance) environment.getAt(distance - 1, "this");
+        var slot = expression.getSlot();
+        var superclass = (LoxClass) environment.getAt(slot.depth(), slot.index());
+        // `self` is always the first variable of the method's scope, which is right inside the `super` one
+        var object = (LoxInstance) environment.getAt(slot.depth() - 1, 0);
 
-        var method = superclass.findMethod(expression.getMethod().literal())
-                .orElseThrow(() -> new RuntimeError(expression.getMethod(),
-                        "Undefined property '" + expression.getMethod().literal() + "'"));
-        return method.bind(object);
+        return new BoundMethod(object, findMethod(superclass, expression.getMethod()));
     }
 
     @Override
-    public Void visit(Expr statement) {
+    public Object visit(ArrayLiteral expression) {
+        var array = new LoxArray(expression.getElements().size());
+        for (var element : expression.getElements()) {
+            array.push(evaluate(element));
+        }
+        return array;
+    }
+
+    @Override
+    public Object visit(GetIndex expression) {
+        var array = evaluate(expression.getArray());
+        var index = evaluate(expression.getIndex());
+        if (!(array instanceof LoxArray loxArray)) {
+            throw new RuntimeError(expression.getBracket(), "Only arrays can be indexed");
+        }
+        try {
+            return loxArray.get(index);
+        } catch (ValueError error) {
+            throw new RuntimeError(expression.getBracket(), error.getMessage());
+        }
+    }
+
+    @Override
+    public Object visit(SetIndex expression) {
+        var array = evaluate(expression.getArray());
+        var index = evaluate(expression.getIndex());
+        var value = evaluate(expression.getValue());
+        if (!(array instanceof LoxArray loxArray)) {
+            throw new RuntimeError(expression.getBracket(), "Only arrays can be indexed");
+        }
+        try {
+            loxArray.set(index, value);
+        } catch (ValueError error) {
+            throw new RuntimeError(expression.getBracket(), error.getMessage());
+        }
+        return value;
+    }
+
+    @Override
+    public Completion visit(Expr statement) {
         evaluate(statement.getExpression());
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visit(Let statement) {
-        var variable = new Variable();
+    public Completion visit(Let statement) {
+        var value = Environment.UNINITIALIZED;
 
         if (statement.getInitializer() != null) {
-            variable.setValue(evaluate(statement.getInitializer()));
-            variable.setInitialized();
+            value = evaluate(statement.getInitializer());
         }
 
-        environment.define(statement.getName().literal(), variable);
-        return null;
+        define(statement.getName(), value);
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visit(Block statement) {
-        executeBlock(statement.getStatements(), new Environment(environment));
-        return null;
+    public Completion visit(Block statement) {
+        return executeBlock(statement.getStatements(), new Environment(environment));
     }
 
     @Override
-    public Void visit(If statement) {
-        if (isTruthy(evaluate(statement.getCondition()))) {
-            execute(statement.getThenBranch());
+    public Completion visit(If statement) {
+        if (Values.isTruthy(evaluate(statement.getCondition()))) {
+            return execute(statement.getThenBranch());
         } else if (statement.getElseBranch().isPresent()) {
-            execute(statement.getElseBranch().get());
+            return execute(statement.getElseBranch().get());
         }
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visit(While statement) {
-        while (isTruthy(evaluate(statement.getCondition()))) {
-            try {
-                execute(statement.getBody());
-            } catch (BreakException be) {
+    public Completion visit(While statement) {
+        while (Values.isTruthy(evaluate(statement.getCondition()))) {
+            var completion = execute(statement.getBody());
+            if (completion == Completion.BREAK) {
                 break;
             }
+            if (completion == Completion.RETURN) {
+                return completion;
+            }
         }
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visit(Break statement) {
-        throw new BreakException();
+    public Completion visit(Break statement) {
+        return Completion.BREAK;
     }
 
     @Override
-    public Void visit(Function statement) {
+    public Completion visit(Function statement) {
         var function = new LoxFunction(statement, environment, false);
-        environment.define(statement.getName().literal(), function);
-        return null;
+        define(statement.getName(), function);
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visit(Return statement) {
-        var value = (statement.getValue().isPresent()) ? evaluate(statement.getValue().get()) : null;
-        throw new ReturnException(value);
+    public Completion visit(Return statement) {
+        returnValue = (statement.getValue().isPresent()) ? evaluate(statement.getValue().get()) : null;
+        return Completion.RETURN;
     }
 
     @Override
-    public Void visit(Class statement) {
+    public Completion visit(Class statement) {
         Object superclass = null;
         if (statement.getSuperclass().isPresent()) {
             superclass = evaluate(statement.getSuperclass().get());
@@ -366,23 +408,9 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
             }
         }
 
-        // We must create a LoxCallable object cause if we pass null, we lose the type info
-        // needed for future instanceof checks
-        environment.define(statement.getName().literal(), new LoxCallable() {
-            @Override
-            public int arity() {
-                return 0;
-            }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Variable> arguments) {
-                return null;
-            }
-        });
-
         if (statement.getSuperclass().isPresent()) {
             environment = new Environment(environment);
-            environment.define("super", (LoxClass) superclass);
+            environment.define(superclass);
         }
 
         var methods = new HashMap<String, LoxFunction>();
@@ -397,74 +425,154 @@ public class Interpreter implements Expression.Visitor<Object>, Statement.Visito
             environment = environment.getParent();
         }
 
-        environment.assign(statement.getName(), class_);
-        return null;
+        // Methods only look the class up when they are called, so it's fine to define it last
+        define(statement.getName(), class_);
+        return Completion.NORMAL;
     }
 
-    public void executeBlock(List<Statement> statements, Environment environment) {
+    public Completion executeBlock(List<Statement> statements, Environment environment) {
         var previousEnv = this.environment;
         try {
             this.environment = environment;
 
             for (var statement : statements) {
-                execute(statement);
+                var completion = execute(statement);
+                if (completion != Completion.NORMAL) {
+                    return completion;
+                }
             }
+            return Completion.NORMAL;
         } finally {
             this.environment = previousEnv;
         }
     }
 
-    private void checkNumberOperands(Token operator, Object... operands) {
-        for (var operand : operands) {
-            if (operand instanceof Variable) {
-                operand = ((Variable) operand).getValue();
-            }
-            if (!(operand instanceof Double)) {
-                System.err.println("[DBG] " + operand);
-                System.err.println(operand.getClass());
-                throw new RuntimeError(operator, "Operand must be a number");
-            }
+    /**
+     * @return value of the `return` that completed the last executed block, resetting it
+     */
+    public Object takeReturnValue() {
+        var value = returnValue;
+        returnValue = null;
+        return value;
+    }
+
+    Object evaluate(Expression expression) {
+        return expression.accept(this);
+    }
+
+    /**
+     * Evaluates an expression that is expected to be a number, keeping intermediate arithmetic unboxed.
+     *
+     * @throws UnexpectedResultException with the value if it's not a number after all
+     */
+    double evaluateDouble(Expression expression) {
+        if (expression instanceof Binary binary && binary.getSpecialization().isArithmetic()) {
+            return arithmetic(binary, binary.getSpecialization());
+        }
+        if (expression instanceof Unary unary && unary.getSpecialization() == UnarySpecialization.NUMBER_NEGATE) {
+            return negate(unary);
+        }
+        if (expression instanceof Grouping grouping) {
+            return evaluateDouble(grouping.getSubExpression());
         }
+        if (expression instanceof Ternary ternary) {
+            return Values.isTruthy(evaluate(ternary.getCondition()))
+                    ? evaluateDouble(ternary.getThenBranch())
+                    : evaluateDouble(ternary.getElseBranch());
+        }
+
+        var value = evaluate(expression);
+        if (value instanceof Double number) {
+            return number;
+        }
+        throw new UnexpectedResultException(value);
     }
 
-    private boolean isEqual(Object left, Object right) {
-        if (left == null && right == null) {
-            return true;
+    /*
+     * The specialization is passed in rather than read from the node, since a recursive call
+     * may deoptimize the node while its operands are being evaluated.
+     */
+    private double arithmetic(Binary expression, BinarySpecialization specialization) {
+        double left;
+        try {
+            left = evaluateDouble(expression.getLeft());
+        } catch (UnexpectedResultException e) {
+            return expectDouble(specialization.execute(expression, e.getResult(), evaluate(expression.getRight())));
         }
-        if (left == null) {
-            return false;
+        double right;
+        try {
+            right = evaluateDouble(expression.getRight());
+        } catch (UnexpectedResultException e) {
+            return expectDouble(specialization.execute(expression, left, e.getResult()));
         }
-        return left.equals(right);
+        return specialization.executeDouble(left, right);
     }
 
-    private boolean isTruthy(Object object) {
-        if (object == null) {
-            return false;
+    private Object compare(Binary expression, BinarySpecialization specialization) {
+        double left;
+        try {
+            left = evaluateDouble(expression.getLeft());
+        } catch (UnexpectedResultException e) {
+            return specialization.execute(expression, e.getResult(), evaluate(expression.getRight()));
         }
-        if (object instanceof Boolean) {
-            return (boolean) object;
+        double right;
+        try {
+            right = evaluateDouble(expression.getRight());
+        } catch (UnexpectedResultException e) {
+            return specialization.execute(expression, left, e.getResult());
         }
-        return true;
+        return specialization.compareDouble(left, right);
     }
 
-    private Object evaluate(Expression expression) {
-        return expression.accept(this);
+    private double negate(Unary expression) {
+        try {
+            return -evaluateDouble(expression.getRight());
+        } catch (UnexpectedResultException e) {
+            // Deoptimizes the node, and throws unless the operand is a number
+            return expectDouble(UnarySpecialization.NUMBER_NEGATE.execute(expression, e.getResult()));
+        }
+    }
+
+    private static double expectDouble(Object value) {
+        if (value instanceof Double number) {
+            return number;
+        }
+        throw new UnexpectedResultException(value);
     }
 
-    private void execute(Statement statement) {
-        statement.accept(this);
+    private Completion execute(Statement statement) {
+        return statement.accept(this);
     }
 
-    public void resolve(Expression expression, int depth) {
-        locals.put(expression, depth);
+    /**
+     * @return value of the global, or {@code null} if it's not defined
+     */
+    public Object findGlobal(int symbol) {
+        return globals.find(symbol);
     }
 
-    private Object lookUpVariable(Token name, Expression expression) {
-        var distance = locals.get(expression);
-        if (distance != null) {
-            return environment.getAt(distance, name.literal());
+    public Jit getJit() {
+        return jit;
+    }
+
+    private void define(Token name, Object value) {
+        if (environment == null) {
+            globals.define(name, value);
         } else {
+            environment.define(value);
+        }
+    }
+
+    private Object lookUpVariable(Token name, Resolvable expression) {
+        var slot = expression.getSlot();
+        if (slot == null) {
             return globals.get(name);
         }
+
+        var value = environment.getAt(slot.depth(), slot.index());
+        if (value == Environment.UNINITIALIZED) {
+            throw new RuntimeError(name, "Uninitialized variable '" + name.literal() + "'");
+        }
+        return value;
     }
 }
@@ -0,0 +1,64 @@
+package ru.rmntim.language.interpreter;
+
+import ru.rmntim.language.interpreter.expression.Logical;
+import ru.rmntim.language.token.TokenType;
+
+/**
+ * Implementation of `and`/`or`, specialized for nodes whose left operand is always a boolean.
+ *
+ * @see BinarySpecialization
+ */
+public enum LogicalSpecialization {
+    UNINITIALIZED {
+        @Override
+        public Object execute(Interpreter interpreter, Logical expression, Object left) {
+            LogicalSpecialization specialization = GENERIC;
+            if (left instanceof Boolean) {
+                specialization = expression.getOperator().type() == TokenType.AND ? BOOLEAN_AND : BOOLEAN_OR;
+            }
+            expression.setSpecialization(specialization);
+            return specialization.execute(interpreter, expression, left);
+        }
+    },
+    BOOLEAN_AND {
+        @Override
+        public Object execute(Interpreter interpreter, Logical expression, Object left) {
+            if (left instanceof Boolean value) {
+                return value ? interpreter.evaluate(expression.getRight()) : left;
+            }
+            return deoptimize(interpreter, expression, left);
+        }
+    },
+    BOOLEAN_OR {
+        @Override
+        public Object execute(Interpreter interpreter, Logical expression, Object left) {
+            if (left instanceof Boolean value) {
+                return value ? left : interpreter.evaluate(expression.getRight());
+            }
+            return deoptimize(interpreter, expression, left);
+        }
+    },
+    GENERIC {
+        @Override
+        public Object execute(Interpreter interpreter, Logical expression, Object left) {
+            if (expression.getOperator().type() == TokenType.OR) {
+                if (Values.isTruthy(left)) {
+                    return left;
+                }
+            } else {
+                if (!Values.isTruthy(left)) {
+                    return left;
+                }
+            }
+
+            return interpreter.evaluate(expression.getRight());
+        }
+    };
+
+    public abstract Object execute(Interpreter interpreter, Logical expression, Object left);
+
+    private static Object deoptimize(Interpreter interpreter, Logical expression, Object left) {
+        expression.setSpecialization(GENERIC);
+        return GENERIC.execute(interpreter, expression, left);
+    }
+}
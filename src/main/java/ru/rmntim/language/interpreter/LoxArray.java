@@ -0,0 +1,109 @@
+package ru.rmntim.language.interpreter;
+
+import java.util.Arrays;
+
+/**
+ * Growable array value, shared by every execution engine.
+ * <p>
+ * As long as an array only holds numbers, they are kept unboxed in a {@code double[]}. The first
+ * element that isn't a number moves everything to an {@code Object[]} for good.
+ */
+public final class LoxArray {
+    private static final int MIN_CAPACITY = 8;
+
+    // Exactly one of the two holds the elements
+    private double[] numbers;
+    private Object[] values = null;
+    private int size = 0;
+
+    public LoxArray(int capacity) {
+        numbers = new double[Math.max(capacity, MIN_CAPACITY)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Object get(Object index) {
+        var i = index(index);
+        return numbers != null ? (Object) numbers[i] : values[i];
+    }
+
+    public void set(Object index, Object value) {
+        store(index(index), value);
+    }
+
+    public void push(Object value) {
+        var capacity = numbers != null ? numbers.length : values.length;
+        if (size == capacity) {
+            if (numbers != null) {
+                numbers = Arrays.copyOf(numbers, capacity * 2);
+            } else {
+                values = Arrays.copyOf(values, capacity * 2);
+            }
+        }
+        store(size++, value);
+    }
+
+    public Object pop() {
+        if (size == 0) {
+            throw new ValueError("Can't pop from an empty array");
+        }
+        --size;
+        if (numbers != null) {
+            return numbers[size];
+        }
+        var value = values[size];
+        values[size] = null;
+        return value;
+    }
+
+    private void store(int index, Object value) {
+        if (numbers != null) {
+            if (value instanceof Double number) {
+                numbers[index] = number;
+                return;
+            }
+            widen();
+        }
+        values[index] = value;
+    }
+
+    private void widen() {
+        values = new Object[numbers.length];
+        for (int i = 0; i < size; ++i) {
+            values[i] = numbers[i];
+        }
+        numbers = null;
+    }
+
+    private int index(Object index) {
+        if (!(index instanceof Double number)) {
+            throw new ValueError("Array index must be a number");
+        }
+        var i = (int) (double) number;
+        if (i != number || i < 0 || i >= size) {
+            throw new ValueError("Array index " + Values.stringify(number) + " is out of bounds");
+        }
+        return i;
+    }
+
+    @Override
+    public String toString() {
+        if (!Values.startPrinting(this)) {
+            return "[...]";
+        }
+        try {
+            var sb = new StringBuilder("[");
+            for (int i = 0; i < size; ++i) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(Values.stringify(numbers != null ? numbers[i] : values[i]));
+            }
+            return sb.append(']').toString();
+        } finally {
+            Values.stopPrinting(this);
+        }
+    }
+}
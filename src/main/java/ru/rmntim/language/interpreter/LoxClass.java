@@ -2,23 +2,28 @@ package ru.rmntim.language.interpreter;
 
 import ru.rmntim.language.env.LoxCallable;
 import ru.rmntim.language.env.LoxFunction;
-import ru.rmntim.language.env.Variable;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
+/**
+ * @param methods methods of the class including inherited ones, so lookups never walk the superclass chain
+ */
 public record LoxClass(String name, LoxClass superclass, Map<String, LoxFunction> methods) implements LoxCallable {
-    public Optional<LoxFunction> findMethod(String name) {
-        if (methods.containsKey(name)) {
-            return Optional.of(methods.get(name));
-        }
-
+    public LoxClass {
         if (superclass != null) {
-            return superclass.findMethod(name);
+            var flattened = new HashMap<>(superclass.methods());
+            flattened.putAll(methods);
+            methods = flattened;
         }
+    }
 
-        return Optional.empty();
+    /**
+     * @return the method, or {@code null} if neither the class nor its superclasses have it
+     */
+    public LoxFunction findMethod(String name) {
+        return methods.get(name);
     }
 
     @Override
@@ -28,14 +33,17 @@ public record LoxClass(String name, LoxClass superclass, Map<String, LoxFunction
 
     @Override
     public int arity() {
-        return findMethod("init").map(LoxFunction::arity).orElse(0);
+        var initializer = findMethod("init");
+        return initializer == null ? 0 : initializer.arity();
     }
 
     @Override
-    public Object call(Interpreter interpreter, List<Variable> arguments) {
+    public Object call(Interpreter interpreter, List<Object> arguments) {
         var instance = new LoxInstance(this);
-        var constructor = findMethod("init");
-        constructor.ifPresent(init -> init.bind(instance).call(interpreter, arguments));
+        var initializer = findMethod("init");
+        if (initializer != null) {
+            initializer.call(interpreter, instance, arguments);
+        }
         return instance;
     }
 }
@@ -1,26 +1,36 @@
 package ru.rmntim.language.interpreter;
 
+import ru.rmntim.language.env.BoundMethod;
 import ru.rmntim.language.token.Token;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public final class LoxInstance {
+    private static final Object[] NO_FIELDS = new Object[0];
+
     private final LoxClass class_;
-    private final Map<String, Object> fields = new HashMap<>();
+    private Shape shape = Shape.EMPTY;
+    private Object[] fields = NO_FIELDS;
 
     public LoxInstance(LoxClass class_) {
         this.class_ = class_;
     }
 
     public Object get(Token name) {
-        if (fields.containsKey(name.literal())) {
-            return fields.get(name.literal());
+        return get(name, shape.indexOf(name.literal()));
+    }
+
+    /**
+     * @param index where the shape of the instance keeps the field, -1 if there's no such field
+     */
+    Object get(Token name, int index) {
+        if (index != -1) {
+            return fields[index];
         }
 
         var method = class_.findMethod(name.literal());
-        if (method.isPresent()) {
-            return method.get().bind(this);
+        if (method != null) {
+            return new BoundMethod(this, method);
         }
 
         throw new RuntimeError(name,
@@ -28,7 +38,32 @@ public final class LoxInstance {
     }
 
     public void set(Token name, Object value) {
-        fields.put(name.literal(), value);
+        var index = shape.indexOf(name.literal());
+        if (index == -1) {
+            index = shape.size();
+            set(shape.with(name.literal()), index, value);
+        } else {
+            fields[index] = value;
+        }
+    }
+
+    /**
+     * @param target shape of the instance once the field is set
+     */
+    void set(Shape target, int index, Object value) {
+        if (index >= fields.length) {
+            fields = Arrays.copyOf(fields, Math.max(4, fields.length * 2));
+        }
+        shape = target;
+        fields[index] = value;
+    }
+
+    LoxClass getLoxClass() {
+        return class_;
+    }
+
+    Shape getShape() {
+        return shape;
     }
 
     @Override
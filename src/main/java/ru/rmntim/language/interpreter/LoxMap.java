@@ -0,0 +1,224 @@
+package ru.rmntim.language.interpreter;
+
+import java.util.Objects;
+
+/**
+ * Hash map value, shared by every execution engine. Keys are compared like {@code ==} compares values.
+ * <p>
+ * The table is open-addressed with linear probing, so an entry is a slot in a few parallel arrays rather than
+ * an object of its own. Number keys are kept unboxed in a {@code long[]} of their bits, any other key in an
+ * {@code Object[]}; each array is only allocated once a key of its kind is added. Removed entries are not left
+ * behind as tombstones: the entries after them are moved back instead, so the table never fills up with them.
+ * <p>
+ * Entries are in no particular order.
+ */
+public final class LoxMap {
+    private static final byte EMPTY = 0;
+    private static final byte NUMBER = 1;
+    private static final byte OBJECT = 2;
+
+    private static final int MIN_CAPACITY = 8;
+
+    private byte[] kinds = new byte[MIN_CAPACITY];
+    private long[] numberKeys = null;
+    private Object[] objectKeys = null;
+    private Object[] values = new Object[MIN_CAPACITY];
+    private int size = 0;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the value of {@code key}, or {@code null} if there is none
+     */
+    public Object get(Object key) {
+        var slot = find(normalize(key));
+        return slot < 0 ? null : values[slot];
+    }
+
+    public boolean has(Object key) {
+        return find(normalize(key)) >= 0;
+    }
+
+    public void put(Object key, Object value) {
+        key = normalize(key);
+        var slot = find(key);
+        if (slot >= 0) {
+            values[slot] = value;
+            return;
+        }
+
+        // The table is kept at most 3/4 full, so probing always ends at an empty slot
+        if ((size + 1) * 4 > kinds.length * 3) {
+            resize(kinds.length * 2);
+        }
+        insert(key, value);
+        ++size;
+    }
+
+    /**
+     * @return the value {@code key} had, or {@code null} if there was none
+     */
+    public Object remove(Object key) {
+        var slot = find(normalize(key));
+        if (slot < 0) {
+            return null;
+        }
+        var value = values[slot];
+        --size;
+
+        // Moves back the entries that probed past the freed slot, so that lookups still reach them
+        var mask = kinds.length - 1;
+        var free = slot;
+        for (int i = (slot + 1) & mask; kinds[i] != EMPTY; i = (i + 1) & mask) {
+            var home = hash(i) & mask;
+            if (((i - home) & mask) >= ((i - free) & mask)) {
+                move(i, free);
+                free = i;
+            }
+        }
+        clear(free);
+        return value;
+    }
+
+    public LoxArray keys() {
+        var keys = new LoxArray(size);
+        for (int i = 0; i < kinds.length; ++i) {
+            if (kinds[i] != EMPTY) {
+                keys.push(key(i));
+            }
+        }
+        return keys;
+    }
+
+    // Strings may also be ropes, which have to be flattened to be hashed
+    private static Object normalize(Object key) {
+        return key instanceof Rope rope ? rope.toString() : key;
+    }
+
+    private int find(Object key) {
+        var mask = kinds.length - 1;
+        if (key instanceof Double number) {
+            var bits = Double.doubleToLongBits(number);
+            for (int i = mix(Long.hashCode(bits)) & mask; kinds[i] != EMPTY; i = (i + 1) & mask) {
+                if (kinds[i] == NUMBER && numberKeys[i] == bits) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        for (int i = mix(Objects.hashCode(key)) & mask; kinds[i] != EMPTY; i = (i + 1) & mask) {
+            if (kinds[i] == OBJECT && Values.isEqual(objectKeys[i], key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(Object key, Object value) {
+        var mask = kinds.length - 1;
+        if (key instanceof Double number) {
+            var bits = Double.doubleToLongBits(number);
+            if (numberKeys == null) {
+                numberKeys = new long[kinds.length];
+            }
+            var i = mix(Long.hashCode(bits)) & mask;
+            while (kinds[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            kinds[i] = NUMBER;
+            numberKeys[i] = bits;
+            values[i] = value;
+            return;
+        }
+
+        if (objectKeys == null) {
+            objectKeys = new Object[kinds.length];
+        }
+        var i = mix(Objects.hashCode(key)) & mask;
+        while (kinds[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        kinds[i] = OBJECT;
+        objectKeys[i] = key;
+        values[i] = value;
+    }
+
+    private void resize(int capacity) {
+        var oldKinds = kinds;
+        var oldNumberKeys = numberKeys;
+        var oldObjectKeys = objectKeys;
+        var oldValues = values;
+
+        kinds = new byte[capacity];
+        numberKeys = oldNumberKeys == null ? null : new long[capacity];
+        objectKeys = oldObjectKeys == null ? null : new Object[capacity];
+        values = new Object[capacity];
+
+        for (int i = 0; i < oldKinds.length; ++i) {
+            switch (oldKinds[i]) {
+                case NUMBER -> insert(Double.longBitsToDouble(oldNumberKeys[i]), oldValues[i]);
+                case OBJECT -> insert(oldObjectKeys[i], oldValues[i]);
+                default -> {
+                }
+            }
+        }
+    }
+
+    private int hash(int slot) {
+        return kinds[slot] == NUMBER ? mix(Long.hashCode(numberKeys[slot])) : mix(Objects.hashCode(objectKeys[slot]));
+    }
+
+    private Object key(int slot) {
+        return kinds[slot] == NUMBER ? Double.longBitsToDouble(numberKeys[slot]) : objectKeys[slot];
+    }
+
+    private void move(int from, int to) {
+        kinds[to] = kinds[from];
+        if (numberKeys != null) {
+            numberKeys[to] = numberKeys[from];
+        }
+        if (objectKeys != null) {
+            objectKeys[to] = objectKeys[from];
+        }
+        values[to] = values[from];
+    }
+
+    private void clear(int slot) {
+        kinds[slot] = EMPTY;
+        if (objectKeys != null) {
+            objectKeys[slot] = null;
+        }
+        values[slot] = null;
+    }
+
+    // Spreads keys that differ only in their high bits, like numbers that differ only in their exponent
+    private static int mix(int hash) {
+        hash *= 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        if (!Values.startPrinting(this)) {
+            return "{...}";
+        }
+        try {
+            var sb = new StringBuilder("{");
+            for (int i = 0; i < kinds.length; ++i) {
+                if (kinds[i] == EMPTY) {
+                    continue;
+                }
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(Values.stringify(key(i))).append(": ").append(Values.stringify(values[i]));
+            }
+            return sb.append('}').toString();
+        } finally {
+            Values.stopPrinting(this);
+        }
+    }
+}
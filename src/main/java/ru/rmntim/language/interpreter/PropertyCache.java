@@ -0,0 +1,59 @@
+package ru.rmntim.language.interpreter;
+
+import java.util.Arrays;
+
+/**
+ * Inline cache of a property access node. Remembers where the property lives for the last few shapes
+ * the node has seen, so a node that always sees the same kind of object never hashes the name.
+ * Once there are more than {@link #MAX_ENTRIES} shapes the node is megamorphic and looks them up every time.
+ */
+public final class PropertyCache {
+    private static final int MAX_ENTRIES = 4;
+
+    /**
+     * @param index  where the field is, -1 if it's missing and the cache is used for reading
+     * @param target shape of the instance after the field is written, same as {@code shape} if it already exists
+     */
+    record Entry(Shape shape, int index, Shape target) {
+    }
+
+    private final String name;
+    private Entry[] entries = new Entry[0];
+
+    public PropertyCache(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return index of the field in instances of the shape, or -1 if they don't have it
+     */
+    int read(Shape shape) {
+        for (var entry : entries) {
+            if (entry.shape() == shape) {
+                return entry.index();
+            }
+        }
+        return remember(new Entry(shape, shape.indexOf(name), shape)).index();
+    }
+
+    Entry write(Shape shape) {
+        for (var entry : entries) {
+            if (entry.shape() == shape) {
+                return entry;
+            }
+        }
+        var index = shape.indexOf(name);
+        if (index != -1) {
+            return remember(new Entry(shape, index, shape));
+        }
+        return remember(new Entry(shape, shape.size(), shape.with(name)));
+    }
+
+    private Entry remember(Entry entry) {
+        if (entries.length < MAX_ENTRIES) {
+            entries = Arrays.copyOf(entries, entries.length + 1);
+            entries[entries.length - 1] = entry;
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,94 @@
+package ru.rmntim.language.interpreter;
+
+import java.util.ArrayDeque;
+
+/**
+ * A Lox string made by concatenation, which is only copied into a single {@link String} when its
+ * characters are needed, e.g. when it's printed or compared.
+ * <p>
+ * Concatenating two strings with {@code +} then takes constant time no matter how long they are,
+ * so building a string piece by piece in a loop is linear instead of quadratic.
+ * Runtime values are either a {@link String} or a rope, so code looking for strings checks
+ * for a {@link CharSequence}.
+ */
+public final class Rope implements CharSequence {
+    // Shorter results are copied right away, a node would cost more than the copy
+    private static final int MIN_LENGTH = 64;
+
+    private final int length;
+    private CharSequence left;
+    private CharSequence right;
+    private String flat = null;
+
+    private Rope(CharSequence left, CharSequence right, int length) {
+        this.left = left;
+        this.right = right;
+        this.length = length;
+    }
+
+    public static CharSequence concat(CharSequence left, CharSequence right) {
+        var length = left.length() + right.length();
+        if (length < 0) {
+            throw new OutOfMemoryError("String is too long");
+        }
+        if (right.isEmpty()) {
+            return left;
+        }
+        if (left.isEmpty()) {
+            return right;
+        }
+        if (length < MIN_LENGTH) {
+            return left.toString().concat(right.toString());
+        }
+        return new Rope(left, right, length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) {
+            flat = flatten();
+            // The pieces aren't needed anymore and may be the only thing keeping a long chain alive
+            left = null;
+            right = null;
+        }
+        return flat;
+    }
+
+    /**
+     * Copies the pieces in order, without recursion: ropes built in a loop are as deep as the loop is long.
+     */
+    private String flatten() {
+        var chars = new char[length];
+        var position = 0;
+        var pending = new ArrayDeque<CharSequence>();
+        pending.push(right);
+        pending.push(left);
+        while (!pending.isEmpty()) {
+            var piece = pending.pop();
+            if (piece instanceof Rope rope && rope.flat == null) {
+                pending.push(rope.right);
+                pending.push(rope.left);
+                continue;
+            }
+            var string = piece.toString();
+            string.getChars(0, string.length(), chars, position);
+            position += string.length();
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,44 @@
+package ru.rmntim.language.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Layout of an instance's fields: which index of the field array each name lives at.
+ * <p>
+ * Shapes form a tree rooted at {@link #EMPTY}. Adding a field moves an instance to a child shape,
+ * and instances that got the same fields in the same order end up sharing one shape.
+ */
+public final class Shape {
+    public static final Shape EMPTY = new Shape(Map.of());
+
+    private final Map<String, Integer> indices;
+    private final Map<String, Shape> transitions = new HashMap<>();
+
+    private Shape(Map<String, Integer> indices) {
+        this.indices = indices;
+    }
+
+    /**
+     * @return index of the field, or -1 if instances of this shape don't have it
+     */
+    public int indexOf(String name) {
+        var index = indices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public int size() {
+        return indices.size();
+    }
+
+    /**
+     * @return shape with the field added after all the existing ones
+     */
+    public Shape with(String name) {
+        return transitions.computeIfAbsent(name, added -> {
+            var extended = new HashMap<>(indices);
+            extended.put(added, indices.size());
+            return new Shape(extended);
+        });
+    }
+}
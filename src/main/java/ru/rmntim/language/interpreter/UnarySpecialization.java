@@ -0,0 +1,56 @@
+package ru.rmntim.language.interpreter;
+
+import ru.rmntim.language.interpreter.expression.Unary;
+
+/**
+ * Implementation of a unary operator, specialized for the operand type a node has seen.
+ *
+ * @see BinarySpecialization
+ */
+public enum UnarySpecialization {
+    UNINITIALIZED {
+        @Override
+        public Object execute(Unary expression, Object right) {
+            var specialization = switch (expression.getOperator().type()) {
+                case MINUS -> right instanceof Double ? NUMBER_NEGATE : GENERIC;
+                case BANG -> NOT;
+                default -> GENERIC;
+            };
+            expression.setSpecialization(specialization);
+            return specialization.execute(expression, right);
+        }
+    },
+    NUMBER_NEGATE {
+        @Override
+        public Object execute(Unary expression, Object right) {
+            if (right instanceof Double value) {
+                return -value;
+            }
+            expression.setSpecialization(GENERIC);
+            return GENERIC.execute(expression, right);
+        }
+    },
+    NOT {
+        @Override
+        public Object execute(Unary expression, Object right) {
+            return !Values.isTruthy(right);
+        }
+    },
+    GENERIC {
+        @Override
+        public Object execute(Unary expression, Object right) {
+            return switch (expression.getOperator().type()) {
+                case MINUS -> {
+                    if (!(right instanceof Double)) {
+                        throw new RuntimeError(expression.getOperator(), "Operand must be a number");
+                    }
+                    yield -(double) right;
+                }
+                case BANG -> !Values.isTruthy(right);
+                default -> null;
+            };
+        }
+    };
+
+    public abstract Object execute(Unary expression, Object right);
+}
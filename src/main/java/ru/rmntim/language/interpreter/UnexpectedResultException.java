@@ -0,0 +1,18 @@
+package ru.rmntim.language.interpreter;
+
+/**
+ * Thrown by {@link Interpreter#evaluateDouble} when an expression evaluates to something other than a number.
+ * Carries the value, so the caller can carry on without evaluating the expression again.
+ */
+final class UnexpectedResultException extends RuntimeException {
+    private final Object result;
+
+    UnexpectedResultException(Object result) {
+        super(null, null, false, false);
+        this.result = result;
+    }
+
+    Object getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,11 @@
+package ru.rmntim.language.interpreter;
+
+/**
+ * Thrown by operations on values that don't know where in the program they were called from,
+ * like natives. The engine that called the operation reports it as a {@link RuntimeError} at the call.
+ */
+public class ValueError extends RuntimeException {
+    public ValueError(String message) {
+        super(message);
+    }
+}
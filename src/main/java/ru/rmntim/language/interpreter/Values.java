@@ -0,0 +1,91 @@
+package ru.rmntim.language.interpreter;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Semantics of Lox values shared by every execution engine.
+ */
+public final class Values {
+    // Arrays and maps being printed, so one that contains itself isn't printed forever
+    private static final Set<Object> printing = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private Values() {
+    }
+
+    public static String stringify(Object value) {
+        if (value == null) {
+            return "nil";
+        }
+
+        if (value instanceof Double) {
+            var text = value.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+
+        return value.toString();
+    }
+
+    /**
+     * Marks a container as being printed.
+     *
+     * @return {@code false} if it already is, so it contains itself and has to be printed as a placeholder
+     */
+    static boolean startPrinting(Object container) {
+        return printing.add(container);
+    }
+
+    static void stopPrinting(Object container) {
+        printing.remove(container);
+    }
+
+    /**
+     * Implements the `+` operator. Strings are concatenated into a {@link Rope}, so the result may be
+     * any {@link CharSequence}.
+     *
+     * @return the sum or concatenation of the operands, or {@code null} if they can't be added
+     */
+    public static Object add(Object left, Object right) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l + r;
+        }
+        if (left instanceof CharSequence l && right instanceof CharSequence r) {
+            return Rope.concat(l, r);
+        }
+        if (left instanceof CharSequence l) {
+            return Rope.concat(l, stringify(right));
+        }
+        if (right instanceof CharSequence r) {
+            return Rope.concat(stringify(left), r);
+        }
+        return null;
+    }
+
+    public static boolean isEqual(Object left, Object right) {
+        if (left == null && right == null) {
+            return true;
+        }
+        if (left == null) {
+            return false;
+        }
+        // A rope and a string with the same characters are the same value
+        if (left instanceof CharSequence l && right instanceof CharSequence r) {
+            return l.length() == r.length() && l.toString().equals(r.toString());
+        }
+        return left.equals(right);
+    }
+
+    public static boolean isTruthy(Object object) {
+        if (object == null) {
+            return false;
+        }
+        if (object instanceof Boolean) {
+            return (boolean) object;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.rmntim.language.interpreter.expression;
+
+import java.util.List;
+
+public class ArrayLiteral extends Expression {
+    private final List<Expression> elements;
+
+    public ArrayLiteral(List<Expression> elements) {
+        this.elements = elements;
+    }
+
+    public List<Expression> getElements() {
+        return elements;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visit(this);
+    }
+}
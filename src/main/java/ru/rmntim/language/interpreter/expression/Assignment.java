@@ -2,7 +2,7 @@ package ru.rmntim.language.interpreter.expression;
 
 import ru.rmntim.language.token.Token;
 
-public class Assignment extends Expression {
+public class Assignment extends Resolvable {
     private final Token name;
     private final Expression value;
 
@@ -1,11 +1,14 @@
 package ru.rmntim.language.interpreter.expression;
 
+import ru.rmntim.language.interpreter.BinarySpecialization;
 import ru.rmntim.language.token.Token;
 
 public class Binary extends Expression {
     private final Expression left;
     private final Token operator;
     private final Expression right;
+    // Rewritten by the interpreter as it learns which operand types the node sees
+    private BinarySpecialization specialization = BinarySpecialization.UNINITIALIZED;
 
     public Binary(Expression left, Token operator, Expression right) {
         this.left = left;
@@ -25,6 +28,14 @@ public class Binary extends Expression {
         return right;
     }
 
+    public BinarySpecialization getSpecialization() {
+        return specialization;
+    }
+
+    public void setSpecialization(BinarySpecialization specialization) {
+        this.specialization = specialization;
+    }
+
     @Override
     public <T> T accept(Visitor<T> visitor) {
         return visitor.visit(this);
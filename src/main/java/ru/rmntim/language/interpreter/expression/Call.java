@@ -1,5 +1,6 @@
 package ru.rmntim.language.interpreter.expression;
 
+import ru.rmntim.language.interpreter.CallCache;
 import ru.rmntim.language.token.Token;
 
 import java.util.List;
@@ -8,6 +9,9 @@ public class Call extends Expression {
     private final Expression calee;
     private final Token paren;
     private final List<Expression> arguments;
+    // Filled in by the interpreter with the last callee
+    private final CallCache cache = new CallCache();
+    private boolean isTailCall = false;
 
     public Call(Expression calee, Token paren, List<Expression> arguments) {
         this.calee = calee;
@@ -27,6 +31,21 @@ public class Call extends Expression {
         return arguments;
     }
 
+    public boolean isTailCall() {
+        return isTailCall;
+    }
+
+    /**
+     * Marks the call as the last thing its function does, see {@code TailCall}.
+     */
+    public void markTailCall() {
+        isTailCall = true;
+    }
+
+    public CallCache getCache() {
+        return cache;
+    }
+
     @Override
     public <T> T accept(Visitor<T> visitor) {
         return visitor.visit(this);
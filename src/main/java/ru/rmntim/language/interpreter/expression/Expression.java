@@ -27,6 +27,12 @@ public abstract class Expression {
         T visit(Self expression);
 
         T visit(Super expression);
+
+        T visit(ArrayLiteral expression);
+
+        T visit(GetIndex expression);
+
+        T visit(SetIndex expression);
     }
 
     public abstract <T> T accept(Visitor<T> visitor);
@@ -1,14 +1,18 @@
 package ru.rmntim.language.interpreter.expression;
 
+import ru.rmntim.language.interpreter.PropertyCache;
 import ru.rmntim.language.token.Token;
 
 public class Get extends Expression {
     private final Expression object;
     private final Token name;
+    // Filled in by the interpreter with the shapes the node has seen
+    private final PropertyCache cache;
 
     public Get(Expression object, Token name) {
         this.object = object;
         this.name = name;
+        this.cache = new PropertyCache(name.literal());
     }
 
     public Expression getObject() {
@@ -19,6 +23,10 @@ public class Get extends Expression {
         return name;
     }
 
+    public PropertyCache getCache() {
+        return cache;
+    }
+
     @Override
     public <T> T accept(Visitor<T> visitor) {
         return visitor.visit(this);
@@ -0,0 +1,32 @@
+package ru.rmntim.language.interpreter.expression;
+
+import ru.rmntim.language.token.Token;
+
+public class GetIndex extends Expression {
+    private final Expression array;
+    private final Token bracket;
+    private final Expression index;
+
+    public GetIndex(Expression array, Token bracket, Expression index) {
+        this.array = array;
+        this.bracket = bracket;
+        this.index = index;
+    }
+
+    public Expression getArray() {
+        return array;
+    }
+
+    public Token getBracket() {
+        return bracket;
+    }
+
+    public Expression getIndex() {
+        return index;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visit(this);
+    }
+}
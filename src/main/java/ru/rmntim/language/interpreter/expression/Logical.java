@@ -1,11 +1,14 @@
 package ru.rmntim.language.interpreter.expression;
 
+import ru.rmntim.language.interpreter.LogicalSpecialization;
 import ru.rmntim.language.token.Token;
 
 public class Logical extends Expression {
     private final Expression left;
     private final Token operator;
     private final Expression right;
+    // Rewritten by the interpreter as it learns which operand types the node sees
+    private LogicalSpecialization specialization = LogicalSpecialization.UNINITIALIZED;
 
     public Logical(Expression left, Token operator, Expression right) {
         this.left = left;
@@ -25,6 +28,14 @@ public class Logical extends Expression {
         return left;
     }
 
+    public LogicalSpecialization getSpecialization() {
+        return specialization;
+    }
+
+    public void setSpecialization(LogicalSpecialization specialization) {
+        this.specialization = specialization;
+    }
+
     @Override
     public <T> T accept(Visitor<T> visitor) {
         return visitor.visit(this);
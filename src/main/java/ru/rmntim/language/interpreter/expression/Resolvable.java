@@ -0,0 +1,22 @@
+package ru.rmntim.language.interpreter.expression;
+
+import ru.rmntim.language.env.Slot;
+
+/**
+ * An expression that refers to a variable. The resolver stores where a local variable lives
+ * right in the node, so reading it doesn't need any lookup.
+ */
+public abstract class Resolvable extends Expression {
+    private Slot slot = null;
+
+    /**
+     * @return where the variable lives, or {@code null} if it's a global
+     */
+    public Slot getSlot() {
+        return slot;
+    }
+
+    public void resolve(Slot slot) {
+        this.slot = slot;
+    }
+}
@@ -2,7 +2,7 @@ package ru.rmntim.language.interpreter.expression;
 
 import ru.rmntim.language.token.Token;
 
-public class Self extends Expression {
+public class Self extends Resolvable {
     private final Token keyword;
 
     public Self(Token keyword) {
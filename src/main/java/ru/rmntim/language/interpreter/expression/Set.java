@@ -1,16 +1,20 @@
 package ru.rmntim.language.interpreter.expression;
 
+import ru.rmntim.language.interpreter.PropertyCache;
 import ru.rmntim.language.token.Token;
 
 public class Set extends Expression {
     private final Expression object;
     private final Token name;
     private final Expression value;
+    // Filled in by the interpreter with the shapes the node has seen
+    private final PropertyCache cache;
 
     public Set(Expression object, Token name, Expression value) {
         this.object = object;
         this.name = name;
         this.value = value;
+        this.cache = new PropertyCache(name.literal());
     }
 
     public Expression getObject() {
@@ -25,6 +29,10 @@ public class Set extends Expression {
         return value;
     }
 
+    public PropertyCache getCache() {
+        return cache;
+    }
+
     @Override
     public <T> T accept(Visitor<T> visitor) {
         return visitor.visit(this);
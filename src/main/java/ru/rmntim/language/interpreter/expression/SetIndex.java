@@ -0,0 +1,38 @@
+package ru.rmntim.language.interpreter.expression;
+
+import ru.rmntim.language.token.Token;
+
+public class SetIndex extends Expression {
+    private final Expression array;
+    private final Token bracket;
+    private final Expression index;
+    private final Expression value;
+
+    public SetIndex(Expression array, Token bracket, Expression index, Expression value) {
+        this.array = array;
+        this.bracket = bracket;
+        this.index = index;
+        this.value = value;
+    }
+
+    public Expression getArray() {
+        return array;
+    }
+
+    public Token getBracket() {
+        return bracket;
+    }
+
+    public Expression getIndex() {
+        return index;
+    }
+
+    public Expression getValue() {
+        return value;
+    }
+
+    @Override
+    public <T> T accept(Visitor<T> visitor) {
+        return visitor.visit(this);
+    }
+}
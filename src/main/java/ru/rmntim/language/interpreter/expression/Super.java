@@ -2,7 +2,7 @@ package ru.rmntim.language.interpreter.expression;
 
 import ru.rmntim.language.token.Token;
 
-public class Super extends Expression {
+public class Super extends Resolvable {
     private final Token keyword;
     private final Token method;
 
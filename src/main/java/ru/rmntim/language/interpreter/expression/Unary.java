@@ -1,10 +1,13 @@
 package ru.rmntim.language.interpreter.expression;
 
+import ru.rmntim.language.interpreter.UnarySpecialization;
 import ru.rmntim.language.token.Token;
 
 public class Unary extends Expression {
     private final Token operator;
     private final Expression right;
+    // Rewritten by the interpreter as it learns which operand types the node sees
+    private UnarySpecialization specialization = UnarySpecialization.UNINITIALIZED;
 
     public Unary(Token operator, Expression right) {
         this.operator = operator;
@@ -19,6 +22,14 @@ public class Unary extends Expression {
         return right;
     }
 
+    public UnarySpecialization getSpecialization() {
+        return specialization;
+    }
+
+    public void setSpecialization(UnarySpecialization specialization) {
+        this.specialization = specialization;
+    }
+
     @Override
     public <T> T accept(Visitor<T> visitor) {
         return visitor.visit(this);
@@ -2,7 +2,7 @@ package ru.rmntim.language.interpreter.expression;
 
 import ru.rmntim.language.token.Token;
 
-public class Variable extends Expression {
+public class Variable extends Resolvable {
     private final Token name;
 
     public Variable(Token name) {
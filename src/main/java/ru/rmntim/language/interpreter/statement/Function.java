@@ -1,5 +1,6 @@
 package ru.rmntim.language.interpreter.statement;
 
+import ru.rmntim.language.jit.JitProfile;
 import ru.rmntim.language.token.Token;
 
 import java.util.List;
@@ -8,6 +9,7 @@ public class Function extends Statement {
     private final Token name;
     private final List<Token> params;
     private final List<Statement> body;
+    private final JitProfile jitProfile = new JitProfile();
 
     public Function(Token name, List<Token> params, List<Statement> body) {
         this.name = name;
@@ -27,6 +29,10 @@ public class Function extends Statement {
         return body;
     }
 
+    public JitProfile getJitProfile() {
+        return jitProfile;
+    }
+
     @Override
     public <T> T accept(Visitor<T> visitor) {
         return visitor.visit(this);
@@ -0,0 +1,177 @@
+package ru.rmntim.language.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer of JVM class files, just enough for the code the JIT generates.
+ * <p>
+ * Classes are emitted with version 49 (Java 5), which is still verified by type inference,
+ * so the generated methods don't need stack map frames.
+ */
+final class ClassBuilder {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private record Method(int access, int name, int descriptor, CodeBuilder code) {
+    }
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<Object, Integer> poolIndices = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final List<Integer> interfaces = new ArrayList<>();
+    private final List<Method> methods = new ArrayList<>();
+
+    ClassBuilder(String name, String superName) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+    }
+
+    void addInterface(String name) {
+        interfaces.add(classRef(name));
+    }
+
+    void addMethod(int access, String name, String descriptor, CodeBuilder code) {
+        methods.add(new Method(access, utf8(name), utf8(descriptor), code));
+    }
+
+    int thisClass() {
+        return thisClass;
+    }
+
+    int utf8(String value) {
+        return constant("utf8:" + value, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        }, 1);
+    }
+
+    int doubleConstant(double value) {
+        return constant(Double.doubleToRawLongBits(value), out -> {
+            out.writeByte(CONSTANT_DOUBLE);
+            out.writeDouble(value);
+        }, 2);
+    }
+
+    int classRef(String name) {
+        var nameIndex = utf8(name);
+        return constant("class:" + name, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(nameIndex);
+        }, 1);
+    }
+
+    int methodRef(int classIndex, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, classIndex, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return methodRef(classRef(owner), name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_INTERFACE_METHODREF, classRef(owner), name, descriptor);
+    }
+
+    private int memberRef(int tag, int classIndex, String name, String descriptor) {
+        var nameIndex = utf8(name);
+        var descriptorIndex = utf8(descriptor);
+        var nameAndType = constant("nat:" + name + ":" + descriptor, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        }, 1);
+        return constant("ref:" + tag + ":" + classIndex + ":" + nameAndType, out -> {
+            out.writeByte(tag);
+            out.writeShort(classIndex);
+            out.writeShort(nameAndType);
+        }, 1);
+    }
+
+    private interface Entry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int constant(Object key, Entry entry, int size) {
+        var index = poolIndices.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            entry.write(poolOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        index = poolCount;
+        poolCount += size;
+        if (poolCount > 0xffff) {
+            throw new Unsupported("Constant pool overflow");
+        }
+        poolIndices.put(key, index);
+        return index;
+    }
+
+    byte[] toByteArray() {
+        // Attribute names must be in the pool before it's written out
+        var codeAttribute = utf8("Code");
+
+        try {
+            var bytes = new ByteArrayOutputStream();
+            var out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.size());
+            for (var index : interfaces) {
+                out.writeShort(index);
+            }
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (var method : methods) {
+                out.writeShort(method.access());
+                out.writeShort(method.name());
+                out.writeShort(method.descriptor());
+                out.writeShort(1);
+                var code = method.code().toByteArray();
+                out.writeShort(codeAttribute);
+                out.writeInt(12 + code.length);
+                out.writeShort(method.code().maxStack());
+                out.writeShort(method.code().maxLocals());
+                out.writeInt(code.length);
+                out.write(code);
+                out.writeShort(0); // exception table
+                out.writeShort(0); // attributes
+            }
+            out.writeShort(0); // class attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
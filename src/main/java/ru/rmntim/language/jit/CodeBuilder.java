@@ -0,0 +1,177 @@
+package ru.rmntim.language.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bytecode of a single JVM method. Tracks the operand stack depth to compute {@code max_stack},
+ * and whether the next instruction can be reached at all.
+ */
+final class CodeBuilder {
+    static final int ICONST_0 = 0x03;
+    static final int DCONST_0 = 0x0e;
+    static final int DCONST_1 = 0x0f;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC2_W = 0x14;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int DALOAD = 0x31;
+    static final int DSTORE = 0x39;
+    static final int POP2 = 0x58;
+    static final int DUP2 = 0x5c;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int DDIV = 0x6f;
+    static final int DNEG = 0x77;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int GOTO = 0xa7;
+    static final int DRETURN = 0xaf;
+    static final int RETURN = 0xb1;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+
+    static final class Label {
+        private int offset = -1;
+        private final List<Integer> jumps = new ArrayList<>();
+    }
+
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<Label> labels = new ArrayList<>();
+    private int stack = 0;
+    private int maxStack = 0;
+    private int maxLocals;
+    private boolean reachable = true;
+
+    CodeBuilder(int maxLocals) {
+        this.maxLocals = maxLocals;
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+
+    int maxLocals() {
+        return maxLocals;
+    }
+
+    boolean isReachable() {
+        return reachable;
+    }
+
+    /**
+     * Reserves a two-slot local variable for a double.
+     */
+    int newDoubleLocal() {
+        var index = maxLocals;
+        maxLocals += 2;
+        if (maxLocals > 0xffff) {
+            throw new Unsupported("Too many locals");
+        }
+        return index;
+    }
+
+    void op(int opcode, int stackEffect) {
+        code.write(opcode);
+        adjust(stackEffect);
+        if (opcode == GOTO || opcode == DRETURN || opcode == RETURN) {
+            reachable = false;
+        }
+    }
+
+    void op(int opcode, int operand, int stackEffect) {
+        op(opcode, stackEffect);
+        writeShort(operand);
+    }
+
+    void localOp(int opcode, int index, int stackEffect) {
+        if (index < 256) {
+            op(opcode, stackEffect);
+            code.write(index);
+        } else {
+            code.write(0xc4); // wide
+            op(opcode, stackEffect);
+            writeShort(index);
+        }
+    }
+
+    void pushInt(int value) {
+        if (value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value < 128) {
+            op(BIPUSH, 1);
+            code.write(value);
+        } else {
+            op(SIPUSH, value, 1);
+        }
+    }
+
+    Label newLabel() {
+        var label = new Label();
+        labels.add(label);
+        return label;
+    }
+
+    void jump(int opcode, Label target) {
+        var start = code.size();
+        op(opcode, opcode == GOTO ? 0 : -1);
+        target.jumps.add(start);
+        writeShort(0);
+    }
+
+    void place(Label label) {
+        label.offset = code.size();
+        if (!label.jumps.isEmpty()) {
+            reachable = true;
+        }
+    }
+
+    /**
+     * Stack depth at a join point where the fallthrough path doesn't exist, e.g. after a `goto`.
+     */
+    void setStack(int depth) {
+        stack = depth;
+    }
+
+    int stack() {
+        return stack;
+    }
+
+    private void adjust(int effect) {
+        stack += effect;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void writeShort(int value) {
+        code.write((value >> 8) & 0xff);
+        code.write(value & 0xff);
+    }
+
+    byte[] toByteArray() {
+        var bytes = code.toByteArray();
+        for (var label : labels) {
+            for (var jump : label.jumps) {
+                var offset = label.offset - jump;
+                if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                    throw new Unsupported("Jump is too long");
+                }
+                bytes[jump + 1] = (byte) (offset >> 8);
+                bytes[jump + 2] = (byte) offset;
+            }
+        }
+        if (bytes.length > 0xffff) {
+            throw new Unsupported("Method is too large");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,8 @@
+package ru.rmntim.language.jit;
+
+/**
+ * Entry point of a function compiled to JVM bytecode. Implemented by the generated hidden classes.
+ */
+public interface CompiledFunction {
+    double invoke(double[] arguments);
+}
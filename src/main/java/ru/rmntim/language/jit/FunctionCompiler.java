@@ -0,0 +1,318 @@
+package ru.rmntim.language.jit;
+
+import ru.rmntim.language.interpreter.expression.*;
+import ru.rmntim.language.interpreter.statement.*;
+import ru.rmntim.language.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.rmntim.language.jit.CodeBuilder.*;
+
+/**
+ * Translates the body of a Lox function into a static JVM method over primitive doubles.
+ * <p>
+ * Only functions where every value is provably a number are accepted: parameters (which the caller
+ * checks on entry), number literals, locals initialized with numbers and arithmetic over them.
+ * Booleans only appear as conditions, and the only call allowed is a direct recursive one.
+ * Anything else throws {@link Unsupported}.
+ */
+final class FunctionCompiler {
+    static final String BODY = "body";
+
+    private final Function declaration;
+    private final ClassBuilder classBuilder;
+    private final CodeBuilder code;
+    private final String bodyDescriptor;
+
+    // JVM locals of every scope, innermost last; the n-th entry of a scope is the variable in the n-th slot
+    private final List<List<Integer>> scopes = new ArrayList<>();
+    private final List<Label> breakTargets = new ArrayList<>();
+    private final Label start;
+    private boolean callsItself = false;
+
+    FunctionCompiler(Function declaration, ClassBuilder classBuilder) {
+        this.declaration = declaration;
+        this.classBuilder = classBuilder;
+        var params = declaration.getParams().size();
+        this.code = new CodeBuilder(params * 2);
+        this.bodyDescriptor = bodyDescriptor(params);
+        this.start = code.newLabel();
+    }
+
+    static String bodyDescriptor(int arity) {
+        return "(" + "D".repeat(arity) + ")D";
+    }
+
+    /**
+     * @return whether the compiled body calls the function through its global name
+     */
+    boolean compile() {
+        var parameters = new ArrayList<Integer>();
+        for (int i = 0; i < declaration.getParams().size(); ++i) {
+            parameters.add(i * 2);
+        }
+        scopes.add(parameters);
+
+        code.place(start);
+        for (var statement : declaration.getBody()) {
+            statement(statement);
+        }
+        if (code.isReachable()) {
+            // The function would return nil, which is not a number
+            throw new Unsupported("Function may return nil");
+        }
+
+        classBuilder.addMethod(ClassBuilder.ACC_PUBLIC | ClassBuilder.ACC_STATIC, BODY, bodyDescriptor, code);
+        return callsItself;
+    }
+
+    private void statement(Statement statement) {
+        switch (statement) {
+            case Expr expr -> {
+                if (expr.getExpression() instanceof Assignment assignment) {
+                    value(assignment.getValue());
+                    code.localOp(DSTORE, local(assignment, assignment.getName().literal()), -2);
+                } else {
+                    value(expr.getExpression());
+                    code.op(POP2, -2);
+                }
+            }
+            case Let let -> {
+                if (let.getInitializer() == null) {
+                    throw new Unsupported("Uninitialized variable");
+                }
+                value(let.getInitializer());
+                var local = code.newDoubleLocal();
+                code.localOp(DSTORE, local, -2);
+                scopes.getLast().add(local);
+            }
+            case Block block -> {
+                scopes.add(new ArrayList<>());
+                for (var inner : block.getStatements()) {
+                    statement(inner);
+                }
+                scopes.removeLast();
+            }
+            case If if_ -> {
+                var elseLabel = code.newLabel();
+                var endLabel = code.newLabel();
+                branch(if_.getCondition(), false, elseLabel);
+                statement(if_.getThenBranch());
+                if (if_.getElseBranch().isPresent()) {
+                    if (code.isReachable()) {
+                        code.jump(GOTO, endLabel);
+                    }
+                    code.place(elseLabel);
+                    statement(if_.getElseBranch().get());
+                } else {
+                    code.place(elseLabel);
+                }
+                code.place(endLabel);
+            }
+            case While while_ -> {
+                var startLabel = code.newLabel();
+                var endLabel = code.newLabel();
+                code.place(startLabel);
+                branch(while_.getCondition(), false, endLabel);
+                breakTargets.add(endLabel);
+                statement(while_.getBody());
+                breakTargets.removeLast();
+                if (code.isReachable()) {
+                    code.jump(GOTO, startLabel);
+                }
+                code.place(endLabel);
+            }
+            case Break ignored -> code.jump(GOTO, breakTargets.getLast());
+            case Return return_ ->
+                    returnValue(return_.getValue().orElseThrow(() -> new Unsupported("Function returns nil")));
+            default -> throw new Unsupported("Unsupported statement " + statement.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Pushes the numeric value of the expression.
+     */
+    private void value(Expression expression) {
+        switch (expression) {
+            case Literal literal -> {
+                if (!(literal.getValue() instanceof Double number)) {
+                    throw new Unsupported("Non-numeric literal");
+                }
+                if (Double.doubleToRawLongBits(number) == 0L) {
+                    code.op(DCONST_0, 2);
+                } else if (number == 1.0) {
+                    code.op(DCONST_1, 2);
+                } else {
+                    code.op(LDC2_W, classBuilder.doubleConstant(number), 2);
+                }
+            }
+            case Grouping grouping -> value(grouping.getSubExpression());
+            case Variable variable -> code.localOp(DLOAD, local(variable, variable.getName().literal()), 2);
+            case Assignment assignment -> {
+                value(assignment.getValue());
+                code.op(DUP2, 2);
+                code.localOp(DSTORE, local(assignment, assignment.getName().literal()), -2);
+            }
+            case Unary unary when unary.getOperator().type() == TokenType.MINUS -> {
+                value(unary.getRight());
+                code.op(DNEG, 0);
+            }
+            case Binary binary when isArithmetic(binary.getOperator().type()) -> {
+                value(binary.getLeft());
+                value(binary.getRight());
+                code.op(switch (binary.getOperator().type()) {
+                    case PLUS -> DADD;
+                    case MINUS -> DSUB;
+                    case STAR -> DMUL;
+                    default -> DDIV;
+                }, -2);
+            }
+            case Ternary ternary -> {
+                var elseLabel = code.newLabel();
+                var endLabel = code.newLabel();
+                branch(ternary.getCondition(), false, elseLabel);
+                var stack = code.stack();
+                value(ternary.getThenBranch());
+                code.jump(GOTO, endLabel);
+                code.place(elseLabel);
+                code.setStack(stack);
+                value(ternary.getElseBranch());
+                code.place(endLabel);
+            }
+            case Call call -> selfCall(call);
+            default -> throw new Unsupported("Unsupported expression " + expression.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Returns the value of the expression. Recursive tail calls become a jump back to the start of the function.
+     */
+    private void returnValue(Expression expression) {
+        switch (expression) {
+            case Grouping grouping -> returnValue(grouping.getSubExpression());
+            case Ternary ternary -> {
+                var elseLabel = code.newLabel();
+                branch(ternary.getCondition(), false, elseLabel);
+                returnValue(ternary.getThenBranch());
+                code.place(elseLabel);
+                returnValue(ternary.getElseBranch());
+            }
+            case Call call when call.isTailCall() -> {
+                pushSelfCallArguments(call);
+                for (int i = call.getArguments().size() - 1; i >= 0; --i) {
+                    code.localOp(DSTORE, i * 2, -2);
+                }
+                code.jump(GOTO, start);
+            }
+            default -> {
+                value(expression);
+                code.op(DRETURN, -2);
+            }
+        }
+    }
+
+    /**
+     * Jumps to the target if the truthiness of the condition equals {@code jumpIf}.
+     */
+    private void branch(Expression condition, boolean jumpIf, Label target) {
+        switch (condition) {
+            case Grouping grouping -> branch(grouping.getSubExpression(), jumpIf, target);
+            case Literal literal when !(literal.getValue() instanceof Double) -> {
+                var truthy = literal.getValue() != null && !literal.getValue().equals(false);
+                if (truthy == jumpIf) {
+                    code.jump(GOTO, target);
+                }
+            }
+            case Unary unary when unary.getOperator().type() == TokenType.BANG ->
+                    branch(unary.getRight(), !jumpIf, target);
+            case Logical logical -> {
+                var isAnd = logical.getOperator().type() == TokenType.AND;
+                if (isAnd != jumpIf) {
+                    // `a and b` is false as soon as `a` is, `a or b` is true as soon as `a` is
+                    branch(logical.getLeft(), jumpIf, target);
+                    branch(logical.getRight(), jumpIf, target);
+                } else {
+                    var skip = code.newLabel();
+                    branch(logical.getLeft(), !jumpIf, skip);
+                    branch(logical.getRight(), jumpIf, target);
+                    code.place(skip);
+                }
+            }
+            case Binary binary when isComparison(binary.getOperator().type()) -> {
+                value(binary.getLeft());
+                value(binary.getRight());
+                var type = binary.getOperator().type();
+                if (type == TokenType.EQUAL_EQUAL || type == TokenType.BANG_EQUAL) {
+                    // Lox compares numbers like Double.equals does, which differs from `==` on NaN and zeros
+                    code.op(INVOKESTATIC, classBuilder.methodRef("java/lang/Double", "compare", "(DD)I"), -3);
+                    var equalJumps = (type == TokenType.EQUAL_EQUAL) == jumpIf;
+                    code.jump(equalJumps ? IFEQ : IFNE, target);
+                    return;
+                }
+                // NaN makes every comparison false: `dcmpg` turns it into 1 and `dcmpl` into -1
+                var less = type == TokenType.LESS || type == TokenType.LESS_EQUAL;
+                code.op(less ? DCMPG : DCMPL, -3);
+                var opcode = switch (type) {
+                    case LESS -> jumpIf ? IFLT : IFGE;
+                    case LESS_EQUAL -> jumpIf ? IFLE : IFGT;
+                    case GREATER -> jumpIf ? IFGT : IFLE;
+                    default -> jumpIf ? IFGE : IFLT;
+                };
+                code.jump(opcode, target);
+            }
+            default -> {
+                // Numbers are always truthy
+                value(condition);
+                code.op(POP2, -2);
+                if (jumpIf) {
+                    code.jump(GOTO, target);
+                }
+            }
+        }
+    }
+
+    private void selfCall(Call call) {
+        pushSelfCallArguments(call);
+        var arguments = call.getArguments().size();
+        code.op(INVOKESTATIC, classBuilder.methodRef(classBuilder.thisClass(), BODY, bodyDescriptor),
+                2 - arguments * 2);
+    }
+
+    private void pushSelfCallArguments(Call call) {
+        if (!(call.getCalee() instanceof Variable callee)
+                || callee.getSlot() != null
+                || !callee.getName().literal().equals(declaration.getName().literal())
+                || call.getArguments().size() != declaration.getParams().size()) {
+            throw new Unsupported("Only direct recursive calls are supported");
+        }
+
+        for (var argument : call.getArguments()) {
+            value(argument);
+        }
+        callsItself = true;
+    }
+
+    private int local(Resolvable expression, String name) {
+        var slot = expression.getSlot();
+        if (slot == null || slot.depth() >= scopes.size()) {
+            throw new Unsupported("Variable '" + name + "' is not local to the function");
+        }
+        var scope = scopes.get(scopes.size() - 1 - slot.depth());
+        if (slot.index() >= scope.size()) {
+            throw new Unsupported("Variable '" + name + "' is not a number");
+        }
+        return scope.get(slot.index());
+    }
+
+    private static boolean isArithmetic(TokenType type) {
+        return type == TokenType.PLUS || type == TokenType.MINUS || type == TokenType.STAR || type == TokenType.SLASH;
+    }
+
+    private static boolean isComparison(TokenType type) {
+        return switch (type) {
+            case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL, EQUAL_EQUAL, BANG_EQUAL -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package ru.rmntim.language.jit;
+
+import ru.rmntim.language.env.LoxFunction;
+import ru.rmntim.language.interpreter.Interpreter;
+import ru.rmntim.language.interpreter.statement.Function;
+import ru.rmntim.language.token.Symbols;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+import static ru.rmntim.language.jit.CodeBuilder.*;
+
+/**
+ * Second execution tier of the tree-walker. Functions that are called often enough are compiled
+ * to JVM bytecode and loaded as hidden classes, so HotSpot can optimize them like regular Java code.
+ * <p>
+ * Compiled code works on primitive doubles. Calls only enter it when every argument is a number,
+ * any other call keeps being interpreted.
+ */
+public final class Jit {
+    public static final int THRESHOLD = 1000;
+
+    private static final String PACKAGE = "ru/rmntim/language/jit/";
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Interpreter interpreter;
+
+    public Jit(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Runs the compiled version of the function, compiling it first if it just became hot.
+     *
+     * @return the result, or {@code null} if the call has to be interpreted
+     */
+    public Object tryCall(LoxFunction function, List<Object> arguments) {
+        if (function.isConstructor()) {
+            return null;
+        }
+
+        var declaration = function.declaration();
+        var profile = declaration.getJitProfile();
+        if (profile.code == null) {
+            if (profile.rejected || ++profile.calls < THRESHOLD) {
+                return null;
+            }
+            compile(declaration, profile);
+            if (profile.code == null) {
+                return null;
+            }
+        }
+
+        // Recursive calls are compiled as direct calls, which is only right while the name still refers to us
+        if (profile.selfSymbol != Symbols.NONE
+                && !(interpreter.findGlobal(profile.selfSymbol) instanceof LoxFunction self
+                && self.declaration() == declaration)) {
+            return null;
+        }
+
+        var values = new double[arguments.size()];
+        for (int i = 0; i < values.length; ++i) {
+            if (!(arguments.get(i) instanceof Double value)) {
+                return null;
+            }
+            values[i] = value;
+        }
+        return profile.code.invoke(values);
+    }
+
+    private void compile(Function declaration, JitProfile profile) {
+        try {
+            var name = PACKAGE + "Compiled_" + declaration.getName().literal().replaceAll("\\W", "_");
+            var classBuilder = new ClassBuilder(name, "java/lang/Object");
+            classBuilder.addInterface(PACKAGE + "CompiledFunction");
+
+            var callsItself = new FunctionCompiler(declaration, classBuilder).compile();
+            addConstructor(classBuilder);
+            addBridge(classBuilder, declaration.getParams().size());
+
+            var lookup = LOOKUP.defineHiddenClass(classBuilder.toByteArray(), true);
+            var constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class));
+            profile.code = (CompiledFunction) constructor.invoke();
+            profile.selfSymbol = callsItself ? declaration.getName().symbol() : Symbols.NONE;
+        } catch (Unsupported e) {
+            profile.rejected = true;
+        } catch (Throwable e) {
+            // Failing to load generated code is a bug in the JIT, but the interpreter can still run the function
+            profile.rejected = true;
+        }
+    }
+
+    private static void addConstructor(ClassBuilder classBuilder) {
+        var code = new CodeBuilder(1);
+        code.localOp(ALOAD, 0, 1);
+        code.op(INVOKESPECIAL, classBuilder.methodRef("java/lang/Object", "<init>", "()V"), -1);
+        code.op(RETURN, 0);
+        classBuilder.addMethod(ClassBuilder.ACC_PUBLIC, "<init>", "()V", code);
+    }
+
+    /**
+     * Implements {@link CompiledFunction#invoke(double[])} by unpacking the arguments for the static body.
+     */
+    private static void addBridge(ClassBuilder classBuilder, int arity) {
+        var code = new CodeBuilder(2);
+        for (int i = 0; i < arity; ++i) {
+            code.localOp(ALOAD, 1, 1);
+            code.pushInt(i);
+            code.op(DALOAD, 0);
+        }
+        var body = classBuilder.methodRef(classBuilder.thisClass(), FunctionCompiler.BODY,
+                FunctionCompiler.bodyDescriptor(arity));
+        code.op(INVOKESTATIC, body, 2 - arity * 2);
+        code.op(DRETURN, -2);
+        classBuilder.addMethod(ClassBuilder.ACC_PUBLIC, "invoke", "([D)D", code);
+    }
+}
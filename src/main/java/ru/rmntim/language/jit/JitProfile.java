@@ -0,0 +1,14 @@
+package ru.rmntim.language.jit;
+
+import ru.rmntim.language.token.Symbols;
+
+/**
+ * Per-declaration bookkeeping of the JIT.
+ */
+public final class JitProfile {
+    int calls = 0;
+    boolean rejected = false;
+    CompiledFunction code = null;
+    // Global the compiled code calls directly, assuming it's still bound to this very function
+    int selfSymbol = Symbols.NONE;
+}
@@ -0,0 +1,10 @@
+package ru.rmntim.language.jit;
+
+/**
+ * Thrown when a function uses something the JIT can't compile. The function then stays interpreted.
+ */
+final class Unsupported extends RuntimeException {
+    Unsupported(String reason) {
+        super(reason, null, false, false);
+    }
+}
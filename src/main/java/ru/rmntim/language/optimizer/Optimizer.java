@@ -0,0 +1,393 @@
+package ru.rmntim.language.optimizer;
+
+import ru.rmntim.language.interpreter.Values;
+import ru.rmntim.language.interpreter.expression.*;
+import ru.rmntim.language.interpreter.statement.Class;
+import ru.rmntim.language.interpreter.statement.*;
+import ru.rmntim.language.token.Symbols;
+import ru.rmntim.language.token.Token;
+import ru.rmntim.language.token.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites resolved statements into cheaper ones with the same behaviour:
+ * <ul>
+ *     <li>folds operators, `and`/`or` and ternaries whose operands are literals;</li>
+ *     <li>drops `if`/ternary branches and `while` loops that can't run;</li>
+ *     <li>removes empty blocks and expression statements that are just a literal;</li>
+ *     <li>turns division by a power of two into multiplication.</li>
+ * </ul>
+ * Nodes are only replaced when something inside them changed. Variables are never replaced,
+ * and a rebuilt assignment inherits the resolution of the one it replaces.
+ * Anything that would fail at runtime, like `"a" - 1`, is left alone so it fails the same way.
+ */
+public class Optimizer implements Expression.Visitor<Expression>, Statement.Visitor<Statement> {
+    private static final Block EMPTY = new Block(List.of());
+
+    public List<Statement> optimize(List<Statement> statements) {
+        var optimized = new ArrayList<Statement>(statements.size());
+        for (var statement : statements) {
+            var result = optimize(statement);
+            if (!isEmpty(result)) {
+                optimized.add(result);
+            }
+        }
+        return optimized;
+    }
+
+    @Override
+    public Expression visit(Literal expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visit(Grouping expression) {
+        var inner = optimize(expression.getSubExpression());
+        if (inner instanceof Literal) {
+            return inner;
+        }
+        return inner == expression.getSubExpression() ? expression : new Grouping(inner);
+    }
+
+    @Override
+    public Expression visit(Unary expression) {
+        var right = optimize(expression.getRight());
+        if (right instanceof Literal literal) {
+            switch (expression.getOperator().type()) {
+                case MINUS -> {
+                    if (literal.getValue() instanceof Double value) {
+                        return new Literal(-value);
+                    }
+                }
+                case BANG -> {
+                    return new Literal(!Values.isTruthy(literal.getValue()));
+                }
+                default -> {
+                }
+            }
+        }
+        return right == expression.getRight() ? expression : new Unary(expression.getOperator(), right);
+    }
+
+    @Override
+    public Expression visit(Binary expression) {
+        var left = optimize(expression.getLeft());
+        var right = optimize(expression.getRight());
+        var operator = expression.getOperator();
+
+        if (left instanceof Literal l && right instanceof Literal r) {
+            var folded = fold(operator.type(), l.getValue(), r.getValue());
+            if (folded != null) {
+                return folded;
+            }
+        }
+
+        if (operator.type() == TokenType.SLASH && right instanceof Literal r
+                && r.getValue() instanceof Double divisor && isPowerOfTwo(divisor)) {
+            // Multiplying by the reciprocal of a power of two gives exactly the same result
+            var star = new Token(TokenType.STAR, Symbols.NONE, null, operator.line(), operator.offset());
+            return new Binary(left, star, new Literal(1 / divisor));
+        }
+
+        if (left == expression.getLeft() && right == expression.getRight()) {
+            return expression;
+        }
+        return new Binary(left, operator, right);
+    }
+
+    @Override
+    public Expression visit(Variable expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visit(Assignment expression) {
+        var value = optimize(expression.getValue());
+        if (value == expression.getValue()) {
+            return expression;
+        }
+
+        var assignment = new Assignment(expression.getName(), value);
+        assignment.resolve(expression.getSlot());
+        return assignment;
+    }
+
+    @Override
+    public Expression visit(Ternary expression) {
+        var condition = optimize(expression.getCondition());
+        if (condition instanceof Literal literal) {
+            return Values.isTruthy(literal.getValue())
+                    ? optimize(expression.getThenBranch())
+                    : optimize(expression.getElseBranch());
+        }
+
+        var thenBranch = optimize(expression.getThenBranch());
+        var elseBranch = optimize(expression.getElseBranch());
+        if (condition == expression.getCondition()
+                && thenBranch == expression.getThenBranch()
+                && elseBranch == expression.getElseBranch()) {
+            return expression;
+        }
+        return new Ternary(condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Expression visit(Logical expression) {
+        var left = optimize(expression.getLeft());
+        var right = optimize(expression.getRight());
+
+        if (left instanceof Literal literal) {
+            var truthy = Values.isTruthy(literal.getValue());
+            var isOr = expression.getOperator().type() == TokenType.OR;
+            // `or` stops at a truthy operand and `and` at a falsy one
+            return truthy == isOr ? left : right;
+        }
+
+        if (left == expression.getLeft() && right == expression.getRight()) {
+            return expression;
+        }
+        return new Logical(left, expression.getOperator(), right);
+    }
+
+    @Override
+    public Expression visit(Call expression) {
+        var callee = optimize(expression.getCalee());
+        var arguments = optimizeAll(expression.getArguments());
+        if (callee == expression.getCalee() && arguments == expression.getArguments()) {
+            return expression;
+        }
+
+        var call = new Call(callee, expression.getParen(), arguments);
+        if (expression.isTailCall()) {
+            call.markTailCall();
+        }
+        return call;
+    }
+
+    @Override
+    public Expression visit(Get expression) {
+        var object = optimize(expression.getObject());
+        return object == expression.getObject() ? expression : new Get(object, expression.getName());
+    }
+
+    @Override
+    public Expression visit(Set expression) {
+        var object = optimize(expression.getObject());
+        var value = optimize(expression.getValue());
+        if (object == expression.getObject() && value == expression.getValue()) {
+            return expression;
+        }
+        return new Set(object, expression.getName(), value);
+    }
+
+    @Override
+    public Expression visit(Self expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visit(Super expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visit(ArrayLiteral expression) {
+        var elements = optimizeAll(expression.getElements());
+        return elements == expression.getElements() ? expression : new ArrayLiteral(elements);
+    }
+
+    @Override
+    public Expression visit(GetIndex expression) {
+        var array = optimize(expression.getArray());
+        var index = optimize(expression.getIndex());
+        if (array == expression.getArray() && index == expression.getIndex()) {
+            return expression;
+        }
+        return new GetIndex(array, expression.getBracket(), index);
+    }
+
+    @Override
+    public Expression visit(SetIndex expression) {
+        var array = optimize(expression.getArray());
+        var index = optimize(expression.getIndex());
+        var value = optimize(expression.getValue());
+        if (array == expression.getArray() && index == expression.getIndex() && value == expression.getValue()) {
+            return expression;
+        }
+        return new SetIndex(array, expression.getBracket(), index, value);
+    }
+
+    @Override
+    public Statement visit(Expr statement) {
+        var expression = optimize(statement.getExpression());
+        if (expression instanceof Literal) {
+            return EMPTY;
+        }
+        return expression == statement.getExpression() ? statement : new Expr(expression);
+    }
+
+    @Override
+    public Statement visit(Let statement) {
+        if (statement.getInitializer() == null) {
+            return statement;
+        }
+        var initializer = optimize(statement.getInitializer());
+        return initializer == statement.getInitializer() ? statement : new Let(statement.getName(), initializer);
+    }
+
+    @Override
+    public Statement visit(Block statement) {
+        var statements = optimize(statement.getStatements());
+        if (statements.isEmpty()) {
+            return EMPTY;
+        }
+        return statements.equals(statement.getStatements()) ? statement : new Block(statements);
+    }
+
+    @Override
+    public Statement visit(If statement) {
+        var condition = optimize(statement.getCondition());
+        if (condition instanceof Literal literal) {
+            if (Values.isTruthy(literal.getValue())) {
+                return optimize(statement.getThenBranch());
+            }
+            return statement.getElseBranch().map(this::optimize).orElse(EMPTY);
+        }
+
+        var thenBranch = optimize(statement.getThenBranch());
+        var elseBranch = statement.getElseBranch().map(this::optimize).orElse(null);
+        if (isEmpty(elseBranch)) {
+            elseBranch = null;
+        }
+        if (condition == statement.getCondition()
+                && thenBranch == statement.getThenBranch()
+                && elseBranch == statement.getElseBranch().orElse(null)) {
+            return statement;
+        }
+        return new If(condition, thenBranch, elseBranch);
+    }
+
+    @Override
+    public Statement visit(While statement) {
+        var condition = optimize(statement.getCondition());
+        if (condition instanceof Literal literal && !Values.isTruthy(literal.getValue())) {
+            return EMPTY;
+        }
+
+        var body = optimize(statement.getBody());
+        if (condition == statement.getCondition() && body == statement.getBody()) {
+            return statement;
+        }
+        return new While(condition, body);
+    }
+
+    @Override
+    public Statement visit(Break statement) {
+        return statement;
+    }
+
+    @Override
+    public Statement visit(Function statement) {
+        var body = optimize(statement.getBody());
+        if (body.equals(statement.getBody())) {
+            return statement;
+        }
+        return new Function(statement.getName(), statement.getParams(), body);
+    }
+
+    @Override
+    public Statement visit(Return statement) {
+        if (statement.getValue().isEmpty()) {
+            return statement;
+        }
+        var value = optimize(statement.getValue().get());
+        return value == statement.getValue().get() ? statement : new Return(statement.getKeyword(), value);
+    }
+
+    @Override
+    public Statement visit(Class statement) {
+        var methods = new ArrayList<Function>(statement.getMethods().size());
+        for (var method : statement.getMethods()) {
+            methods.add((Function) optimize(method));
+        }
+        if (methods.equals(statement.getMethods())) {
+            return statement;
+        }
+        return new Class(statement.getName(), statement.getSuperclass().orElse(null), methods);
+    }
+
+    /**
+     * @return literal with the result, or {@code null} if the operation would fail at runtime
+     */
+    private static Literal fold(TokenType operator, Object left, Object right) {
+        if (operator == TokenType.EQUAL_EQUAL) {
+            return new Literal(Values.isEqual(left, right));
+        }
+        if (operator == TokenType.BANG_EQUAL) {
+            return new Literal(!Values.isEqual(left, right));
+        }
+        if (operator == TokenType.PLUS) {
+            var sum = Values.add(left, right);
+            if (sum == null) {
+                return null;
+            }
+            // Ropes only exist at runtime, literals hold plain strings
+            return new Literal(sum instanceof CharSequence string ? string.toString() : sum);
+        }
+
+        if (!(left instanceof Double l) || !(right instanceof Double r)) {
+            return null;
+        }
+        return switch (operator) {
+            case MINUS -> new Literal(l - r);
+            case STAR -> new Literal(l * r);
+            case SLASH -> new Literal(l / r);
+            case GREATER -> new Literal(l > r);
+            case GREATER_EQUAL -> new Literal(l >= r);
+            case LESS -> new Literal(l < r);
+            case LESS_EQUAL -> new Literal(l <= r);
+            default -> null;
+        };
+    }
+
+    private static boolean isPowerOfTwo(double value) {
+        if (value == 0 || !Double.isFinite(value)) {
+            return false;
+        }
+        var mantissa = Double.doubleToRawLongBits(value) & 0x000f_ffff_ffff_ffffL;
+        var reciprocal = 1 / value;
+        // Subnormal numbers and their reciprocals aren't exact
+        return mantissa == 0
+                && Math.getExponent(value) >= Double.MIN_EXPONENT
+                && Math.getExponent(reciprocal) >= Double.MIN_EXPONENT
+                && Double.isFinite(reciprocal);
+    }
+
+    private static boolean isEmpty(Statement statement) {
+        return statement instanceof Block block && block.getStatements().isEmpty();
+    }
+
+    /**
+     * @return the same list if none of the expressions changed
+     */
+    private List<Expression> optimizeAll(List<Expression> expressions) {
+        var optimized = new ArrayList<Expression>(expressions.size());
+        var changed = false;
+        for (var expression : expressions) {
+            var result = optimize(expression);
+            changed |= result != expression;
+            optimized.add(result);
+        }
+        return changed ? optimized : expressions;
+    }
+
+    private Statement optimize(Statement statement) {
+        return statement.accept(this);
+    }
+
+    private Expression optimize(Expression expression) {
+        return expression.accept(this);
+    }
+}
@@ -0,0 +1,110 @@
+package ru.rmntim.language.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boundaries of top-level declarations: a `fn`, `class` or `let` outside of any braces or parentheses
+ * that follows a `;` or a `}`. Nothing can continue a statement with those keywords, so the source
+ * between two boundaries parses the same on its own as it does as a part of the whole source.
+ */
+public final class Declarations {
+    /**
+     * @param line line of the first character
+     */
+    public record Span(int start, int end, int line) {
+    }
+
+    private Declarations() {
+    }
+
+    /**
+     * Finds the declaration boundaries, skipping over strings and comments, and cuts the source
+     * at the first boundary after every {@code targetSize} characters.
+     */
+    public static List<Span> split(String source, int targetSize) {
+        var chunks = new ArrayList<Span>();
+        var chunkStart = 0;
+        var chunkLine = 1;
+
+        var line = 1;
+        var depth = 0;
+        // Last character of the previous token
+        var last = ';';
+        var length = source.length();
+        for (int i = 0; i < length; ++i) {
+            var c = source.charAt(i);
+            switch (c) {
+                case '\n' -> line++;
+                case ' ', '\r', '\t' -> {
+                }
+                case '"' -> {
+                    i++;
+                    while (i < length && source.charAt(i) != '"') {
+                        if (source.charAt(i) == '\n') {
+                            line++;
+                        }
+                        i++;
+                    }
+                    last = c;
+                }
+                case '/' -> {
+                    if (i + 1 < length && source.charAt(i + 1) == '/') {
+                        while (i + 1 < length && source.charAt(i + 1) != '\n') {
+                            i++;
+                        }
+                    } else if (i + 1 < length && source.charAt(i + 1) == '*') {
+                        i += 2;
+                        while (i + 1 < length && !(source.charAt(i) == '*' && source.charAt(i + 1) == '/')) {
+                            if (source.charAt(i) == '\n') {
+                                line++;
+                            }
+                            i++;
+                        }
+                        i++;
+                    } else {
+                        last = c;
+                    }
+                }
+                case '{', '(' -> {
+                    depth++;
+                    last = c;
+                }
+                case '}', ')' -> {
+                    depth--;
+                    last = c;
+                }
+                default -> {
+                    if (!isWordCharacter(c)) {
+                        last = c;
+                        break;
+                    }
+                    var end = i + 1;
+                    while (end < length && isWordCharacter(source.charAt(end))) {
+                        end++;
+                    }
+                    if (depth == 0 && (last == ';' || last == '}') && i - chunkStart >= targetSize
+                            && isDeclarationKeyword(source, i, end)) {
+                        chunks.add(new Span(chunkStart, i, chunkLine));
+                        chunkStart = i;
+                        chunkLine = line;
+                    }
+                    last = c;
+                    i = end - 1;
+                }
+            }
+        }
+
+        chunks.add(new Span(chunkStart, length, chunkLine));
+        return chunks;
+    }
+
+    private static boolean isDeclarationKeyword(String source, int start, int end) {
+        var word = source.substring(start, end);
+        return word.equals("fn") || word.equals("class") || word.equals("let");
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
@@ -0,0 +1,66 @@
+package ru.rmntim.language.parser;
+
+import ru.rmntim.language.interpreter.statement.Statement;
+import ru.rmntim.language.util.ErrorReporter;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses a large source on several threads.
+ * <p>
+ * The source is first split into chunks at top-level {@link Declarations declarations}, so every chunk
+ * parses exactly as it would as a part of the whole source. The chunks are then scanned and parsed
+ * concurrently, and their statements and errors are put back together in source order.
+ */
+public class ParallelParser {
+    // Smaller chunks cost more in scheduling than they gain
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    private record Result(List<Statement> statements, List<String> errors) {
+    }
+
+    private final String source;
+    private final ForkJoinPool pool;
+
+    public ParallelParser(String source, ForkJoinPool pool) {
+        this.source = source;
+        this.pool = pool;
+    }
+
+    public List<Statement> parse() {
+        var chunkSize = Math.max(MIN_CHUNK_SIZE, source.length() / (pool.getParallelism() * 4));
+        var chunks = Declarations.split(source, chunkSize);
+        if (chunks.size() == 1) {
+            return new Parser(new Scanner(source)).parse();
+        }
+
+        var tasks = new ArrayList<ForkJoinTask<Result>>();
+        for (var chunk : chunks) {
+            tasks.add(pool.submit(() -> parse(chunk)));
+        }
+
+        var statements = new ArrayList<Statement>();
+        for (var task : tasks) {
+            var result = task.join();
+            ErrorReporter.replay(result.errors());
+            statements.addAll(result.statements());
+        }
+        return statements;
+    }
+
+    private Result parse(Declarations.Span chunk) {
+        ErrorReporter.startCapture();
+        try {
+            var reader = new StringReader(source.substring(chunk.start(), chunk.end()));
+            var statements = new Parser(new Scanner(reader, chunk.line(), chunk.start())).parse();
+            return new Result(statements, ErrorReporter.stopCapture());
+        } catch (RuntimeException e) {
+            ErrorReporter.stopCapture();
+            throw e;
+        }
+    }
+}
@@ -16,11 +16,47 @@ public class Parser {
     private static class ParseError extends RuntimeException {
     }
 
-    private final List<Token> tokens;
-    private int current = 0;
-
-    public Parser(final List<Token> tokens) {
+    // Precedence of the operators, from the loosest to the tightest binding
+    private static final int ASSIGNMENT_PRECEDENCE = 1;
+    private static final int OR_PRECEDENCE = 2;
+    private static final int AND_PRECEDENCE = 3;
+    private static final int EQUALITY_PRECEDENCE = 4;
+    private static final int COMPARISON_PRECEDENCE = 5;
+    private static final int TERM_PRECEDENCE = 6;
+    private static final int FACTOR_PRECEDENCE = 7;
+    private static final int UNARY_PRECEDENCE = 8;
+    private static final int CALL_PRECEDENCE = 9;
+
+    // Indexed by token type, tokens that can't follow an operand have 0
+    private static final int[] PRECEDENCE = new int[TokenType.values().length];
+
+    static {
+        PRECEDENCE[EQUAL.ordinal()] = ASSIGNMENT_PRECEDENCE;
+        PRECEDENCE[OR.ordinal()] = OR_PRECEDENCE;
+        PRECEDENCE[AND.ordinal()] = AND_PRECEDENCE;
+        PRECEDENCE[BANG_EQUAL.ordinal()] = EQUALITY_PRECEDENCE;
+        PRECEDENCE[EQUAL_EQUAL.ordinal()] = EQUALITY_PRECEDENCE;
+        PRECEDENCE[GREATER.ordinal()] = COMPARISON_PRECEDENCE;
+        PRECEDENCE[GREATER_EQUAL.ordinal()] = COMPARISON_PRECEDENCE;
+        PRECEDENCE[LESS.ordinal()] = COMPARISON_PRECEDENCE;
+        PRECEDENCE[LESS_EQUAL.ordinal()] = COMPARISON_PRECEDENCE;
+        PRECEDENCE[MINUS.ordinal()] = TERM_PRECEDENCE;
+        PRECEDENCE[PLUS.ordinal()] = TERM_PRECEDENCE;
+        PRECEDENCE[SLASH.ordinal()] = FACTOR_PRECEDENCE;
+        PRECEDENCE[STAR.ordinal()] = FACTOR_PRECEDENCE;
+        PRECEDENCE[LEFT_PAREN.ordinal()] = CALL_PRECEDENCE;
+        PRECEDENCE[LEFT_BRACKET.ordinal()] = CALL_PRECEDENCE;
+        PRECEDENCE[DOT.ordinal()] = CALL_PRECEDENCE;
+    }
+
+    private final TokenSource tokens;
+    // The parser never looks further than one token ahead, so these are all the tokens it keeps
+    private Token previous = null;
+    private Token current;
+
+    public Parser(final TokenSource tokens) {
         this.tokens = tokens;
+        this.current = tokens.nextToken();
     }
 
     public List<Statement> parse() {
@@ -229,124 +265,60 @@ public class Parser {
     }
 
     private Expression assignment() {
-        var expr = or();
-
-        if (expect(EQUAL)) {
-            var equals = previous();
-            var value = assignment();
-
-            if (expr instanceof Variable) {
-                var name = ((Variable) expr).getName();
-                return new Assignment(name, value);
-            } else if (expr instanceof Get get) {
-                return new Set(get.getObject(), get.getName(), value);
-            }
-
-            // Not throwing the error, because parser technically is in right state, so nothing is broken
-            //noinspection ThrowableNotThrown
-            error(equals, "Invalid assignment target");
-        }
-
-        return expr;
-    }
-
-    private Expression or() {
-        var expr = and();
-
-        while (expect(OR)) {
-            var operator = previous();
-            var right = and();
-            expr = new Logical(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expression and() {
-        var expr = equality();
-
-        while (expect(AND)) {
-            var operator = previous();
-            var right = equality();
-            expr = new Logical(expr, operator, right);
+        return parse(ASSIGNMENT_PRECEDENCE);
+    }
+
+    /**
+     * Parses an expression whose operators all bind at least as tightly as {@code precedence}.
+     * <p>
+     * The operand comes first, then every operator after it that binds tightly enough is folded into
+     * the result along with its right operand. Each operator's precedence is looked up in a table, instead of
+     * going through a method per precedence level for every operand.
+     */
+    private Expression parse(int precedence) {
+        var expr = prefix();
+
+        while (PRECEDENCE[peek().type().ordinal()] >= precedence) {
+            var operator = next();
+            expr = switch (operator.type()) {
+                case EQUAL -> assignment(expr, operator);
+                case OR, AND -> new Logical(expr, operator, parse(PRECEDENCE[operator.type().ordinal()] + 1));
+                case LEFT_PAREN -> finishCall(expr);
+                case LEFT_BRACKET -> finishIndex(expr);
+                case DOT -> new Get(expr, consume(IDENTIFIER, "Expected property name after '.'"));
+                default -> new Binary(expr, operator, parse(PRECEDENCE[operator.type().ordinal()] + 1));
+            };
         }
 
         return expr;
     }
 
-    private Expression equality() {
-        var expr = comparison();
+    private Expression assignment(Expression target, Token equals) {
+        // Assignment is right-associative, so the value may be another assignment
+        var value = parse(ASSIGNMENT_PRECEDENCE);
 
-        while (expect(BANG_EQUAL, EQUAL_EQUAL)) {
-            var operator = previous();
-            var right = comparison();
-            expr = new Binary(expr, operator, right);
+        if (target instanceof Variable variable) {
+            return new Assignment(variable.getName(), value);
+        } else if (target instanceof Get get) {
+            return new Set(get.getObject(), get.getName(), value);
+        } else if (target instanceof GetIndex get) {
+            return new SetIndex(get.getArray(), get.getBracket(), get.getIndex(), value);
         }
 
-        return expr;
+        // Not throwing the error, because parser technically is in right state, so nothing is broken
+        //noinspection ThrowableNotThrown
+        error(equals, "Invalid assignment target");
+        return target;
     }
 
-    private Expression comparison() {
-        var expr = term();
-
-        while (expect(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            var operator = previous();
-            var right = term();
-            expr = new Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expression term() {
-        var expr = factor();
-
-        while (expect(MINUS, PLUS)) {
-            var operator = previous();
-            var right = factor();
-            expr = new Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expression factor() {
-        var expr = unary();
-
-        while (expect(SLASH, STAR)) {
-            var operator = previous();
-            var right = unary();
-            expr = new Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expression unary() {
-        if (expect(BANG, MINUS)) {
-            var operator = previous();
-            var right = unary();
+    private Expression prefix() {
+        if (check(BANG) || check(MINUS)) {
+            var operator = next();
+            var right = parse(UNARY_PRECEDENCE);
             return new Unary(operator, right);
         }
 
-        return call();
-    }
-
-    private Expression call() {
-        var expr = primary();
-
-        while (true) {
-            if (expect(LEFT_PAREN)) {
-                expr = finishCall(expr);
-            } else if (expect(DOT)) {
-                var name = consume(IDENTIFIER, "Expected property name after '.'");
-                expr = new Get(expr, name);
-            } else {
-                break;
-            }
-        }
-
-        return expr;
+        return primary();
     }
 
     private Expression finishCall(Expression callee) {
@@ -366,12 +338,18 @@ public class Parser {
         return new Call(callee, paren, arguments);
     }
 
+    private Expression finishIndex(Expression array) {
+        var index = expression();
+        var bracket = consume(RIGHT_BRACKET, "Expected ']' after index");
+        return new GetIndex(array, bracket, index);
+    }
+
     private Expression primary() {
         if (expect(FALSE)) return new Literal(false);
         if (expect(TRUE)) return new Literal(true);
         if (expect(NIL)) return new Literal(null);
 
-        if (expect(NUMBER, STRING)) {
+        if (expect(NUMBER) || expect(STRING)) {
             return new Literal(previous().value());
         }
 
@@ -396,6 +374,17 @@ public class Parser {
             return new Grouping(expr);
         }
 
+        if (expect(LEFT_BRACKET)) {
+            var elements = new ArrayList<Expression>();
+            if (!check(RIGHT_BRACKET)) {
+                do {
+                    elements.add(expression());
+                } while (expect(COMMA));
+            }
+            consume(RIGHT_BRACKET, "Expected ']' after array elements");
+            return new ArrayLiteral(elements);
+        }
+
         throw error(peek(), "Expected expression");
     }
 
@@ -435,12 +424,10 @@ public class Parser {
     }
 
 
-    private boolean expect(TokenType... types) {
-        for (var type : types) {
-            if (check(type)) {
-                next();
-                return true;
-            }
+    private boolean expect(TokenType type) {
+        if (check(type)) {
+            next();
+            return true;
         }
 
         return false;
@@ -456,7 +443,8 @@ public class Parser {
 
     private Token next() {
         if (!isEnd()) {
-            current++;
+            previous = current;
+            current = tokens.nextToken();
         }
         return previous();
     }
@@ -466,10 +454,10 @@ public class Parser {
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return current;
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return previous;
     }
 }
@@ -1,57 +1,116 @@
 package ru.rmntim.language.parser;
 
+import ru.rmntim.language.token.Symbols;
 import ru.rmntim.language.token.Token;
 import ru.rmntim.language.token.TokenType;
 import ru.rmntim.language.util.ErrorReporter;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import static ru.rmntim.language.token.TokenType.*;
 
-public class Scanner {
-    private final String source;
-    private int start = 0;
-    private int current = 0;
+/**
+ * Turns characters into tokens. The source is pulled from a {@link Reader} through a small buffer
+ * as tokens are requested, so neither the whole source nor all of its tokens have to be in memory.
+ */
+public class Scanner implements TokenSource {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader source;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean sourceExhausted = false;
+
+    // Characters of the token being scanned
+    private char[] lexeme = new char[64];
+    private int lexemeLength = 0;
+    private Token scanned = null;
     private int line = 1;
-    private final List<Token> tokens = new ArrayList<>();
+    // Offsets in the whole source, not in the buffer
+    private int offset = 0;
+    private int start = 0;
+
+    private static final byte ALPHA = 1;
+    private static final byte DIGIT = 2;
+    // Classes of ASCII characters; anything beyond is never part of a name or a number
+    private static final byte[] classes = new byte[128];
 
-    private static final Map<String, TokenType> keywords;
+    // Keywords are placed by a hash that has no collisions among them, so recognizing one takes a single probe
+    private static final int KEYWORD_SLOTS = 32;
+    private static final String[] keywordNames = new String[KEYWORD_SLOTS];
+    private static final TokenType[] keywordTypes = new TokenType[KEYWORD_SLOTS];
 
     static {
-        keywords = new HashMap<>();
-        keywords.put("and", AND);
-        keywords.put("class", CLASS);
-        keywords.put("else", ELSE);
-        keywords.put("false", FALSE);
-        keywords.put("for", FOR);
-        keywords.put("fn", FUNCTION);
-        keywords.put("if", IF);
-        keywords.put("nil", NIL);
-        keywords.put("or", OR);
-        keywords.put("return", RETURN);
-        keywords.put("super", SUPER);
-        keywords.put("self", SELF);
-        keywords.put("true", TRUE);
-        keywords.put("let", LET);
-        keywords.put("while", WHILE);
-        keywords.put("break", BREAK);
+        for (var c = 'a'; c <= 'z'; ++c) {
+            classes[c] = ALPHA;
+            classes[Character.toUpperCase(c)] = ALPHA;
+        }
+        classes['_'] = ALPHA;
+        for (var c = '0'; c <= '9'; ++c) {
+            classes[c] = DIGIT;
+        }
+
+        for (var type : new TokenType[]{
+                AND, CLASS, ELSE, FALSE, FOR, FUNCTION, IF, NIL, OR, RETURN, SUPER, SELF, TRUE, LET, WHILE, BREAK}) {
+            var name = type.lexeme();
+            var slot = keywordSlot(name.charAt(0), name.charAt(name.length() - 1), name.length());
+            if (keywordNames[slot] != null) {
+                throw new IllegalStateException("Keywords '" + name + "' and '" + keywordNames[slot] + "' collide");
+            }
+            keywordNames[slot] = name;
+            keywordTypes[slot] = type;
+        }
     }
 
     public Scanner(String source) {
+        this(new StringReader(source));
+    }
+
+    public Scanner(Reader source) {
+        this(source, 1, 0);
+    }
+
+    /**
+     * Scans a part of a larger source that begins at the given line and character offset.
+     */
+    public Scanner(Reader source, int line, int offset) {
         this.source = source;
+        this.line = line;
+        this.offset = offset;
     }
 
     public List<Token> scanTokens() {
-        while (!isEof()) {
-            start = current;
+        var tokens = new ArrayList<Token>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type() != EOF);
+        return tokens;
+    }
+
+    @Override
+    public Token nextToken() {
+        // Whitespace and comments don't produce tokens, so it may take several attempts
+        while (scanned == null) {
+            if (isEof()) {
+                return new Token(EOF, Symbols.NONE, null, line, offset);
+            }
+            lexemeLength = 0;
+            start = offset;
             scanToken();
         }
 
-        tokens.add(new Token(EOF, "", null, line));
-        return tokens;
+        var token = scanned;
+        scanned = null;
+        return token;
     }
 
     private void scanToken() {
@@ -69,6 +128,12 @@ public class Scanner {
             case '}':
                 addToken(RIGHT_BRACE);
                 break;
+            case '[':
+                addToken(LEFT_BRACKET);
+                break;
+            case ']':
+                addToken(RIGHT_BRACKET);
+                break;
             case ',':
                 addToken(COMMA);
                 break;
@@ -108,7 +173,7 @@ public class Scanner {
             case '/':
                 if (expect('/')) {
                     while (peek() != '\n' && !isEof()) {
-                        next();
+                        skip();
                     }
                 } else if (expect('*')) {
                     readBlockComment();
@@ -139,19 +204,19 @@ public class Scanner {
     }
 
     private void readBlockComment() {
-        while (peek() != '*' && peekNext() != '/' && !isEof()) {
+        while (!(peek() == '*' && peekNext() == '/') && !isEof()) {
             if (peek() == '\n') {
                 line++;
             }
-            next();
+            skip();
         }
 
         if (isEof()) {
             return;
         }
 
-        next();
-        next();
+        skip();
+        skip();
     }
 
     private void readIdentifier() {
@@ -159,24 +224,45 @@ public class Scanner {
             next();
         }
 
-        var text = source.substring(start, current);
-        var type = keywords.getOrDefault(text, IDENTIFIER);
-        addToken(type);
+        var type = keyword();
+        if (type != null) {
+            addToken(type);
+        } else {
+            scanned = new Token(IDENTIFIER, Symbols.intern(lexeme, lexemeLength), null, line, start);
+        }
+    }
+
+    private TokenType keyword() {
+        var slot = keywordSlot(lexeme[0], lexeme[lexemeLength - 1], lexemeLength);
+        var name = keywordNames[slot];
+        if (name == null || name.length() != lexemeLength) {
+            return null;
+        }
+        for (int i = 0; i < lexemeLength; ++i) {
+            if (name.charAt(i) != lexeme[i]) {
+                return null;
+            }
+        }
+        return keywordTypes[slot];
+    }
+
+    private static int keywordSlot(char first, char last, int length) {
+        return (first + 19 * last + length) & (KEYWORD_SLOTS - 1);
     }
 
     private void readNumber() {
-        while (Character.isDigit(peek())) {
+        while (isDigit(peek())) {
             next();
         }
 
-        if (peek() == '.' && Character.isDigit(peekNext())) {
+        if (peek() == '.' && isDigit(peekNext())) {
             next();
-            while (Character.isDigit(peek())) {
+            while (isDigit(peek())) {
                 next();
             }
         }
 
-        addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+        addToken(NUMBER, Double.parseDouble(new String(lexeme, 0, lexemeLength)));
     }
 
     private void readString() {
@@ -194,30 +280,29 @@ public class Scanner {
 
         next();
 
-        var value = source.substring(start + 1, current - 1);
+        var value = new String(lexeme, 1, lexemeLength - 2);
         addToken(STRING, value);
     }
 
     private char peek() {
-        if (isEof()) {
+        if (!fill(1)) {
             return '\0';
         }
-        return source.charAt(current);
+        return buffer[position];
     }
 
     private char peekNext() {
-        if (current + 1 >= source.length()) {
+        if (!fill(2)) {
             return '\0';
         }
-        return source.charAt(current + 1);
+        return buffer[position + 1];
     }
 
-
     private boolean expect(char expected) {
-        if (isEof() || (source.charAt(current) != expected)) {
+        if (isEof() || peek() != expected) {
             return false;
         }
-        current++;
+        next();
         return true;
     }
 
@@ -225,30 +310,70 @@ public class Scanner {
         addToken(type, null);
     }
 
+    // Identifiers are interned by readIdentifier, literals are spelled by their value
     private void addToken(TokenType type, Object value) {
-        var text = source.substring(start, current);
-        tokens.add(new Token(type, text, value, line));
+        scanned = new Token(type, Symbols.NONE, value, line, start);
     }
 
     private char next() {
-        return source.charAt(current++);
+        var c = buffer[position++];
+        offset++;
+        if (lexemeLength == lexeme.length) {
+            lexeme = Arrays.copyOf(lexeme, lexemeLength * 2);
+        }
+        lexeme[lexemeLength++] = c;
+        return c;
+    }
+
+    /**
+     * Consumes a character that isn't part of any token.
+     */
+    private void skip() {
+        position++;
+        offset++;
     }
 
     private boolean isEof() {
-        return current >= source.length();
+        return !fill(1);
+    }
+
+    /**
+     * Makes sure at least {@code count} characters are buffered.
+     *
+     * @return false if the source ends before that
+     */
+    private boolean fill(int count) {
+        if (limit - position >= count) {
+            return true;
+        }
+
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+        try {
+            while (limit < count && !sourceExhausted) {
+                var read = source.read(buffer, limit, buffer.length - limit);
+                if (read == -1) {
+                    sourceExhausted = true;
+                } else {
+                    limit += read;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return limit - position >= count;
     }
 
-    private boolean isAlpha(char c) {
-        return (c >= 'a' && c <= 'z') ||
-                (c >= 'A' && c <= 'Z') ||
-                c == '_';
+    private static boolean isAlpha(char c) {
+        return c < 128 && classes[c] == ALPHA;
     }
 
-    private boolean isDigit(char c) {
-        return c >= '0' && c <= '9';
+    private static boolean isDigit(char c) {
+        return c < 128 && classes[c] == DIGIT;
     }
 
-    private boolean isAlphaNumeric(char c) {
-        return isAlpha(c) || isDigit(c);
+    private static boolean isAlphaNumeric(char c) {
+        return c < 128 && classes[c] != 0;
     }
 }
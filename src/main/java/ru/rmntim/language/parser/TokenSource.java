@@ -0,0 +1,14 @@
+package ru.rmntim.language.parser;
+
+import ru.rmntim.language.token.Token;
+
+/**
+ * Where the {@link Parser} gets its tokens from, one at a time.
+ */
+@FunctionalInterface
+public interface TokenSource {
+    /**
+     * @return the next token, or an {@code EOF} token once the input is over
+     */
+    Token nextToken();
+}
@@ -1,28 +1,27 @@
 package ru.rmntim.language.resolver;
 
-import ru.rmntim.language.interpreter.Interpreter;
+import ru.rmntim.language.env.Slot;
 import ru.rmntim.language.interpreter.expression.*;
 import ru.rmntim.language.interpreter.statement.Class;
 import ru.rmntim.language.interpreter.statement.*;
+import ru.rmntim.language.token.Symbols;
 import ru.rmntim.language.token.Token;
 import ru.rmntim.language.util.ErrorReporter;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Stack;
 
 public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Void> {
-    private final Interpreter interpreter;
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    // `self` and `super` are keywords, so their tokens don't carry a symbol
+    private static final int SELF = Symbols.intern("self");
+    private static final int SUPER = Symbols.intern("super");
+
+    // Innermost scope last
+    private final List<Scope> scopes = new ArrayList<>();
     private FunctionType currentFunction = FunctionType.NONE;
     private ClassType currentClass = ClassType.NONE;
     private boolean inLoop = false;
 
-    public Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
-    }
-
     @Override
     public Void visit(Binary expression) {
         resolve(expression.getLeft());
@@ -50,7 +49,7 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
     @Override
     public Void visit(Variable expression) {
         if (!scopes.isEmpty() &&
-                scopes.peek().get(expression.getName().literal()) == Boolean.FALSE) {
+                scopes.getLast().isDefined(expression.getName().symbol()) == Boolean.FALSE) {
             ErrorReporter.error(expression.getName(),
                     "Unable to read local variable in its own initializer");
         }
@@ -127,6 +126,29 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
         return null;
     }
 
+    @Override
+    public Void visit(ArrayLiteral expression) {
+        for (var element : expression.getElements()) {
+            resolve(element);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(GetIndex expression) {
+        resolve(expression.getArray());
+        resolve(expression.getIndex());
+        return null;
+    }
+
+    @Override
+    public Void visit(SetIndex expression) {
+        resolve(expression.getArray());
+        resolve(expression.getIndex());
+        resolve(expression.getValue());
+        return null;
+    }
+
     @Override
     public Void visit(Expr statement) {
         resolve(statement.getExpression());
@@ -194,8 +216,9 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
                 ErrorReporter.error(statement.getKeyword(),
                         "Unable to return from a constructor");
             }
+            resolve(statement.getValue().get());
+            markTailCalls(statement.getValue().get());
         }
-        resolve(statement.getValue().get());
         return null;
     }
 
@@ -208,19 +231,17 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
 
         if (statement.getSuperclass().isPresent()) {
             var superclass = statement.getSuperclass().get();
-            if (statement.getName().literal().equals(superclass.getName().literal())) {
+            if (statement.getName().symbol() == superclass.getName().symbol()) {
                 ErrorReporter.error(superclass.getName(),
                         "Class can't inherit from itself");
             }
             currentClass = ClassType.SUBCLASS;
             resolve(superclass);
             beginScope();
-            scopes.peek().put("super", true);
+            scopes.getLast().declare(SUPER);
+            scopes.getLast().define(SUPER);
         }
 
-        beginScope();
-        scopes.peek().put("self", true);
-
         for (var method : statement.getMethods()) {
             var declaration = FunctionType.METHOD;
             if (method.getName().literal().equals("init")) {
@@ -229,8 +250,6 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
             resolveFunction(method, declaration);
         }
 
-        endScope();
-
         if (statement.getSuperclass().isPresent()) {
             endScope();
         }
@@ -254,35 +273,60 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
     }
 
     private void beginScope() {
-        scopes.push(new HashMap<>());
+        scopes.add(new Scope());
     }
 
     private void endScope() {
-        scopes.pop();
+        scopes.removeLast();
     }
 
     private void declare(Token name) {
         if (scopes.isEmpty()) {
             return;
         }
-        var scope = scopes.peek();
-        if (scope.containsKey(name.literal())) {
+        var scope = scopes.getLast();
+        if (scope.contains(name.symbol())) {
             ErrorReporter.error(name, "Variable with this name already exists in scope");
+            return;
         }
-        scope.put(name.literal(), false);
+        scope.declare(name.symbol());
     }
 
     private void define(Token name) {
         if (scopes.isEmpty()) {
             return;
         }
-        scopes.peek().put(name.literal(), true);
+        scopes.getLast().define(name.symbol());
+    }
+
+    /**
+     * Marks calls whose value is returned as is by the enclosing `return`.
+     */
+    private void markTailCalls(Expression expression) {
+        switch (expression) {
+            case Call call -> call.markTailCall();
+            case Grouping grouping -> markTailCalls(grouping.getSubExpression());
+            case Ternary ternary -> {
+                markTailCalls(ternary.getThenBranch());
+                markTailCalls(ternary.getElseBranch());
+            }
+            case Logical logical -> markTailCalls(logical.getRight());
+            default -> {
+            }
+        }
     }
 
-    private void resolveLocal(Expression expression, Token name) {
+    private void resolveLocal(Resolvable expression, Token name) {
+        var symbol = switch (name.type()) {
+            case SELF -> SELF;
+            case SUPER -> SUPER;
+            default -> name.symbol();
+        };
         for (int i = scopes.size() - 1; i >= 0; --i) {
-            if (scopes.get(i).containsKey(name.literal())) {
-                interpreter.resolve(expression, scopes.size() - 1 - i);
+            var scope = scopes.get(i);
+            var slot = scope.slot(symbol);
+            if (slot >= 0) {
+                expression.resolve(new Slot(scopes.size() - 1 - i, slot));
                 return;
             }
         }
@@ -293,6 +337,11 @@ public class Resolver implements Expression.Visitor<Void>, Statement.Visitor<Voi
         currentFunction = type;
 
         beginScope();
+        // Methods get the receiver in the first slot, so calling them doesn't need a scope just for `self`
+        if (type == FunctionType.METHOD || type == FunctionType.CONSTRUCTOR) {
+            scopes.getLast().declare(SELF);
+            scopes.getLast().define(SELF);
+        }
         for (var param : function.getParams()) {
             declare(param);
             define(param);
@@ -0,0 +1,48 @@
+package ru.rmntim.language.resolver;
+
+import java.util.Arrays;
+
+/**
+ * Compile-time view of a scope: which names it declares, in which slots and whether they're ready to be read.
+ * <p>
+ * Names are symbol ids, and the slot of a name is its position in declaration order.
+ * Scopes rarely hold more than a handful of names, so they are simply scanned.
+ */
+final class Scope {
+    private int[] symbols = new int[4];
+    private boolean[] defined = new boolean[4];
+    private int size = 0;
+
+    public void declare(int symbol) {
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, size * 2);
+            defined = Arrays.copyOf(defined, size * 2);
+        }
+        symbols[size++] = symbol;
+    }
+
+    public void define(int symbol) {
+        defined[slot(symbol)] = true;
+    }
+
+    public boolean contains(int symbol) {
+        return slot(symbol) >= 0;
+    }
+
+    public Boolean isDefined(int symbol) {
+        var slot = slot(symbol);
+        return slot < 0 ? null : defined[slot];
+    }
+
+    /**
+     * @return slot of the name, or -1 if it's not declared here
+     */
+    public int slot(int symbol) {
+        for (int i = 0; i < size; ++i) {
+            if (symbols[i] == symbol) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
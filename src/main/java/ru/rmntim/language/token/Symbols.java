@@ -0,0 +1,107 @@
+package ru.rmntim.language.token;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interned names. Every distinct name gets a small integer id and a single shared string,
+ * so tokens only keep the id and names can be compared without looking at their characters.
+ * <p>
+ * Names can be looked up straight from the scanner's character buffer, so a name that was seen
+ * before costs no copy. Scanners may run on several threads: names are kept in a concurrent map,
+ * so a name that is already interned is found without locking, and new names only contend
+ * with names that land in the same bin.
+ */
+public final class Symbols {
+    /**
+     * Id of tokens whose text is given by their type.
+     */
+    public static final int NONE = -1;
+
+    // Names by id are stored in pages, so the table can grow without moving what other threads are reading
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int MAX_PAGES = 1 << 16;
+
+    private static final ConcurrentHashMap<Key, Integer> ids = new ConcurrentHashMap<>();
+    private static final AtomicReferenceArray<String[]> pages = new AtomicReferenceArray<>(MAX_PAGES);
+    private static final AtomicInteger count = new AtomicInteger();
+
+    private Symbols() {
+    }
+
+    public static int intern(String name) {
+        return intern(name.toCharArray(), name.length());
+    }
+
+    public static int intern(char[] chars, int length) {
+        var id = ids.get(new Key(chars, length));
+        if (id != null) {
+            return id;
+        }
+        // The buffer is reused by the scanner, so the key that is kept gets characters of its own.
+        // The name is stored before the id is published, so whoever sees the id can also see the name
+        var key = new Key(Arrays.copyOf(chars, length), length);
+        return ids.computeIfAbsent(key, k -> add(new String(k.chars, 0, k.length)));
+    }
+
+    private static int add(String name) {
+        var id = count.getAndIncrement();
+        var index = id >>> PAGE_BITS;
+        if (index >= MAX_PAGES) {
+            throw new IllegalStateException("Too many names");
+        }
+        var page = pages.get(index);
+        if (page == null) {
+            pages.compareAndSet(index, null, new String[PAGE_SIZE]);
+            page = pages.get(index);
+        }
+        page[id & (PAGE_SIZE - 1)] = name;
+        return id;
+    }
+
+    public static String name(int id) {
+        return pages.get(id >>> PAGE_BITS)[id & (PAGE_SIZE - 1)];
+    }
+
+    /**
+     * @return upper bound of the ids handed out so far
+     */
+    public static int count() {
+        return count.get();
+    }
+
+    /**
+     * Key of a name in the map. A key looked up straight from a scanner's buffer is equal to the key
+     * stored for the same characters, and the other way around, so the map finds names no matter which
+     * side it compares from. Stored keys own a copy of their characters.
+     */
+    private static final class Key {
+        private final char[] chars;
+        private final int length;
+        private final int hash;
+
+        Key(char[] chars, int length) {
+            this.chars = chars;
+            this.length = length;
+            var hash = 0;
+            for (int i = 0; i < length; ++i) {
+                hash = 31 * hash + chars[i];
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && key.hash == hash
+                    && Arrays.equals(chars, 0, length, key.chars, 0, key.length);
+        }
+    }
+}
@@ -1,4 +1,27 @@
 package ru.rmntim.language.token;
 
-public record Token(TokenType type, String literal, Object value, int line) {
+import java.math.BigDecimal;
+
+/**
+ * A token doesn't keep its own copy of the source text: operators and keywords are spelled by their type,
+ * literals by their value, and identifiers refer to an interned {@link Symbols symbol}.
+ *
+ * @param offset position of the first character in the source
+ */
+public record Token(TokenType type, int symbol, Object value, int line, int offset) {
+    public String literal() {
+        if (symbol != Symbols.NONE) {
+            return Symbols.name(symbol);
+        }
+        return switch (type) {
+            case STRING -> "\"" + value + "\"";
+            // Written back without trailing zeros, which is how numbers are usually written anyway
+            case NUMBER -> BigDecimal.valueOf((Double) value).stripTrailingZeros().toPlainString();
+            default -> type.lexeme();
+        };
+    }
+
+    public int length() {
+        return literal().length();
+    }
 }
@@ -1,20 +1,34 @@
 package ru.rmntim.language.token;
 
 public enum TokenType {
-    LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE,
-    COMMA, DOT, MINUS, PLUS, SEMICOLON, SLASH, STAR,
+    LEFT_PAREN("("), RIGHT_PAREN(")"), LEFT_BRACE("{"), RIGHT_BRACE("}"), LEFT_BRACKET("["), RIGHT_BRACKET("]"),
+    COMMA(","), DOT("."), MINUS("-"), PLUS("+"), SEMICOLON(";"), SLASH("/"), STAR("*"),
 
-    QUESTION, COLON,
+    QUESTION("?"), COLON(":"),
 
-    BANG, BANG_EQUAL,
-    EQUAL, EQUAL_EQUAL,
-    GREATER, GREATER_EQUAL,
-    LESS, LESS_EQUAL,
+    BANG("!"), BANG_EQUAL("!="),
+    EQUAL("="), EQUAL_EQUAL("=="),
+    GREATER(">"), GREATER_EQUAL(">="),
+    LESS("<"), LESS_EQUAL("<="),
 
-    IDENTIFIER, STRING, NUMBER,
+    IDENTIFIER(null), STRING(null), NUMBER(null),
 
-    AND, CLASS, ELSE, FALSE, FUNCTION, FOR, IF, NIL, OR,
-    RETURN, SUPER, SELF, TRUE, LET, WHILE, BREAK,
+    AND("and"), CLASS("class"), ELSE("else"), FALSE("false"), FUNCTION("fn"), FOR("for"), IF("if"), NIL("nil"),
+    OR("or"), RETURN("return"), SUPER("super"), SELF("self"), TRUE("true"), LET("let"), WHILE("while"),
+    BREAK("break"),
 
-    EOF
+    EOF("");
+
+    private final String lexeme;
+
+    TokenType(String lexeme) {
+        this.lexeme = lexeme;
+    }
+
+    /**
+     * @return the text of every token of this type, or {@code null} if it varies
+     */
+    public String lexeme() {
+        return lexeme;
+    }
 }
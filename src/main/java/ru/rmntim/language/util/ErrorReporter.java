@@ -4,10 +4,16 @@ import ru.rmntim.language.interpreter.RuntimeError;
 import ru.rmntim.language.token.Token;
 import ru.rmntim.language.token.TokenType;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ErrorReporter {
     public static boolean errorState = false;
     public static boolean runtimeErrorState = false;
 
+    // Reports of the current thread are collected here instead of being printed, if set
+    private static final ThreadLocal<List<String>> captured = new ThreadLocal<>();
+
     private ErrorReporter() {
     }
 
@@ -24,12 +30,41 @@ public class ErrorReporter {
     }
 
     public static void report(int line, String location, String message) {
-        System.err.println("[ERROR] (" + line + ")" + location + ": " + message);
+        var report = "[ERROR] (" + line + ")" + location + ": " + message;
+        var reports = captured.get();
+        if (reports != null) {
+            reports.add(report);
+            return;
+        }
+        System.err.println(report);
         errorState = true;
     }
 
+    /**
+     * Starts collecting the compile errors reported on this thread, so work running in parallel can
+     * have them printed in source order later with {@link #replay}.
+     */
+    public static void startCapture() {
+        captured.set(new ArrayList<>());
+    }
+
+    public static List<String> stopCapture() {
+        var reports = captured.get();
+        captured.remove();
+        return reports;
+    }
+
+    public static void replay(List<String> reports) {
+        for (var report : reports) {
+            System.err.println(report);
+            errorState = true;
+        }
+    }
+
     public static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n(" + error.getToken().line() + ")");
+        // What the program printed before the error comes out before it
+        Output.flush();
+        System.err.println(error.getMessage() + "\n(" + error.getLine() + ")");
         runtimeErrorState = true;
     }
 }
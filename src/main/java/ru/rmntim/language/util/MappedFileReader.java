@@ -0,0 +1,59 @@
+package ru.rmntim.language.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+
+/**
+ * Reads a memory-mapped file, decoding it only as far as it's read.
+ * The file is never loaded into the heap as a whole.
+ */
+public class MappedFileReader extends Reader {
+    private final MappedByteBuffer bytes;
+    private final CharsetDecoder decoder;
+    private boolean flushed = false;
+
+    public MappedFileReader(Path path, Charset charset) throws IOException {
+        try (var channel = FileChannel.open(path)) {
+            // The mapping stays valid after the channel is closed
+            this.bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (flushed) {
+            return -1;
+        }
+        if (length == 0) {
+            return 0;
+        }
+
+        var chars = CharBuffer.wrap(buffer, offset, length);
+        var result = decoder.decode(bytes, chars, true);
+        if (result.isError()) {
+            throw new CharacterCodingException();
+        }
+        if (!bytes.hasRemaining() && !flushed && !result.isOverflow()) {
+            decoder.flush(chars);
+            flushed = true;
+        }
+
+        var read = chars.position() - offset;
+        return read == 0 && flushed ? -1 : read;
+    }
+
+    @Override
+    public void close() {
+    }
+}
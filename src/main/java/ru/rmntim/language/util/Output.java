@@ -0,0 +1,90 @@
+package ru.rmntim.language.util;
+
+/**
+ * Where {@code print} writes to. Lines are encoded to UTF-8 straight into a byte buffer, which is written
+ * to standard output only when it's full or flushed, so printing a line is usually just a copy.
+ * <p>
+ * When standard output is a terminal every line is written right away, like {@link System#out} does;
+ * otherwise lines are batched in a {@link #DEFAULT_SIZE} buffer. Programs only print from one thread,
+ * so nothing here is synchronized.
+ */
+public final class Output {
+    public static final int DEFAULT_SIZE = 64 * 1024;
+
+    // Room for the longest encoded character, so one can always be added without checking each byte
+    private static final int MIN_SIZE = 16;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    private static byte[] buffer = new byte[DEFAULT_SIZE];
+    private static int position = 0;
+    private static boolean flushLines = System.console() != null;
+
+    private Output() {
+    }
+
+    /**
+     * Sets how many bytes are kept before they are written, {@code 0} writes every line right away.
+     */
+    public static void setBufferSize(int size) {
+        flush();
+        flushLines = size == 0;
+        buffer = new byte[Math.max(size, MIN_SIZE)];
+    }
+
+    public static void println(String string) {
+        var limit = buffer.length - 4;
+        for (int i = 0; i < string.length(); ++i) {
+            if (position > limit) {
+                write();
+            }
+            var c = string.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < string.length()
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                var codePoint = Character.toCodePoint(c, string.charAt(++i));
+                buffer[position++] = (byte) (0xf0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                // A lone surrogate can't be encoded, the same replacement the standard encoder uses
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xe0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+
+        if (position + LINE_SEPARATOR.length > buffer.length) {
+            write();
+        }
+        System.arraycopy(LINE_SEPARATOR, 0, buffer, position, LINE_SEPARATOR.length);
+        position += LINE_SEPARATOR.length;
+
+        if (flushLines) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes out everything printed so far. Called before anything else is written to the terminal,
+     * like an error or a prompt, so that it comes out in order.
+     */
+    public static void flush() {
+        write();
+        System.out.flush();
+    }
+
+    private static void write() {
+        if (position > 0) {
+            // System.out rather than the file descriptor itself, to stay in order with what's printed there
+            System.out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package ru.rmntim.language.vm;
+
+record BoundMethod(Object receiver, Closure method) {
+    @Override
+    public String toString() {
+        return method.toString();
+    }
+}
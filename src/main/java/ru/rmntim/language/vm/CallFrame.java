@@ -0,0 +1,11 @@
+package ru.rmntim.language.vm;
+
+/**
+ * Activation record of a closure. Frames are reused between calls, hence the mutable fields.
+ */
+final class CallFrame {
+    Closure closure;
+    int ip;
+    // Stack index of slot zero, which holds the callee itself or the receiver of a method
+    int base;
+}
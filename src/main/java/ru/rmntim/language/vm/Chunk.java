@@ -0,0 +1,67 @@
+package ru.rmntim.language.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bytecode of a single function together with its constant pool and line table.
+ */
+final class Chunk {
+    private byte[] code = new byte[64];
+    private int[] lines = new int[64];
+    private int size = 0;
+    private final List<Object> constants = new ArrayList<>();
+    private Object[] constantPool;
+
+    void write(int value, int line) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+            lines = Arrays.copyOf(lines, size * 2);
+        }
+        code[size] = (byte) value;
+        lines[size] = line;
+        size++;
+    }
+
+    void patch(int offset, int value) {
+        code[offset] = (byte) value;
+    }
+
+    int addConstant(Object value) {
+        // Strings and numbers are immutable, so identical ones can share an entry
+        if (value instanceof String || value instanceof Double) {
+            var index = constants.indexOf(value);
+            if (index >= 0) {
+                return index;
+            }
+        }
+        constants.add(value);
+        return constants.size() - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Trims the code and freezes the constant pool. Called once the function is fully compiled.
+     */
+    void seal() {
+        code = Arrays.copyOf(code, size);
+        lines = Arrays.copyOf(lines, size);
+        constantPool = constants.toArray();
+    }
+
+    byte[] code() {
+        return code;
+    }
+
+    Object[] constants() {
+        return constantPool;
+    }
+
+    int line(int offset) {
+        return lines[offset];
+    }
+}
@@ -0,0 +1,16 @@
+package ru.rmntim.language.vm;
+
+final class Closure {
+    final Prototype prototype;
+    final Upvalue[] upvalues;
+
+    Closure(Prototype prototype) {
+        this.prototype = prototype;
+        this.upvalues = new Upvalue[prototype.upvalueCount];
+    }
+
+    @Override
+    public String toString() {
+        return prototype.toString();
+    }
+}
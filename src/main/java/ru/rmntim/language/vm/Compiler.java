@@ -0,0 +1,687 @@
+package ru.rmntim.language.vm;
+
+import ru.rmntim.language.interpreter.expression.*;
+import ru.rmntim.language.interpreter.statement.Class;
+import ru.rmntim.language.interpreter.statement.*;
+import ru.rmntim.language.token.Symbols;
+import ru.rmntim.language.token.Token;
+import ru.rmntim.language.token.TokenType;
+import ru.rmntim.language.util.ErrorReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translates a resolved syntax tree into bytecode for the {@link VirtualMachine}.
+ * <p>
+ * Locals live on the VM stack, so the compiler tracks them (and the variables closures capture)
+ * itself instead of relying on the tree-walker's environment slots.
+ */
+final class Compiler implements Expression.Visitor<Void>, Statement.Visitor<Void> {
+    private static final int MAX_OPERAND = 0xffff;
+
+    private enum FunctionKind {
+        SCRIPT,
+        FUNCTION,
+        METHOD,
+        INITIALIZER,
+    }
+
+    private static final class Local {
+        final String name;
+        final int depth;
+        final boolean mayBeUninitialized;
+        boolean isCaptured = false;
+
+        Local(String name, int depth, boolean mayBeUninitialized) {
+            this.name = name;
+            this.depth = depth;
+            this.mayBeUninitialized = mayBeUninitialized;
+        }
+    }
+
+    private record UpvalueRef(int index, boolean isLocal, boolean mayBeUninitialized) {
+    }
+
+    private static final class Loop {
+        final Loop enclosing;
+        final int scopeDepth;
+        final List<Integer> breakJumps = new ArrayList<>();
+
+        Loop(Loop enclosing, int scopeDepth) {
+            this.enclosing = enclosing;
+            this.scopeDepth = scopeDepth;
+        }
+    }
+
+    private static final class FunctionState {
+        final FunctionState enclosing;
+        final Prototype prototype;
+        final FunctionKind kind;
+        final List<Local> locals = new ArrayList<>();
+        final List<UpvalueRef> upvalues = new ArrayList<>();
+        int scopeDepth = 0;
+        int stackDepth = 0;
+        Loop loop = null;
+
+        FunctionState(FunctionState enclosing, Prototype prototype, FunctionKind kind) {
+            this.enclosing = enclosing;
+            this.prototype = prototype;
+            this.kind = kind;
+        }
+    }
+
+    private final VirtualMachine vm;
+    private FunctionState current = null;
+    private int line = 1;
+    private boolean hadError = false;
+
+    private Compiler(VirtualMachine vm) {
+        this.vm = vm;
+    }
+
+    /**
+     * @return top-level code as a function without parameters, or {@code null} if it can't be compiled
+     */
+    static Prototype compile(List<Statement> statements, VirtualMachine vm) {
+        var compiler = new Compiler(vm);
+        compiler.begin(new Prototype(null, 0), FunctionKind.SCRIPT);
+        for (var statement : statements) {
+            compiler.compile(statement);
+        }
+        var script = compiler.end();
+        return compiler.hadError ? null : script;
+    }
+
+    @Override
+    public Void visit(Literal expression) {
+        var value = expression.getValue();
+        if (value == null) {
+            emitOp(OpCode.NIL, 1);
+        } else if (value.equals(true)) {
+            emitOp(OpCode.TRUE, 1);
+        } else if (value.equals(false)) {
+            emitOp(OpCode.FALSE, 1);
+        } else {
+            emitOperandOp(OpCode.CONSTANT, makeConstant(value), 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Grouping expression) {
+        compile(expression.getSubExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Unary expression) {
+        compile(expression.getRight());
+        line = expression.getOperator().line();
+        switch (expression.getOperator().type()) {
+            case MINUS -> emitOp(OpCode.NEGATE, 0);
+            case BANG -> emitOp(OpCode.NOT, 0);
+            default -> throw new IllegalStateException("Unexpected unary operator " + expression.getOperator());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Binary expression) {
+        compile(expression.getLeft());
+        compile(expression.getRight());
+        line = expression.getOperator().line();
+        var op = switch (expression.getOperator().type()) {
+            case MINUS -> OpCode.SUBTRACT;
+            case SLASH -> OpCode.DIVIDE;
+            case STAR -> OpCode.MULTIPLY;
+            case PLUS -> OpCode.ADD;
+            case GREATER -> OpCode.GREATER;
+            case GREATER_EQUAL -> OpCode.GREATER_EQUAL;
+            case LESS -> OpCode.LESS;
+            case LESS_EQUAL -> OpCode.LESS_EQUAL;
+            case BANG_EQUAL -> OpCode.NOT_EQUAL;
+            case EQUAL_EQUAL -> OpCode.EQUAL;
+            default -> throw new IllegalStateException("Unexpected binary operator " + expression.getOperator());
+        };
+        emitOp(op, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Variable expression) {
+        loadVariable(expression.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Assignment expression) {
+        compile(expression.getValue());
+        storeVariable(expression.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ternary expression) {
+        compile(expression.getCondition());
+        var elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emitOp(OpCode.POP, -1);
+        compile(expression.getThenBranch());
+        var endJump = emitJump(OpCode.JUMP);
+        patchJump(elseJump);
+        emitOp(OpCode.POP, -1);
+        compile(expression.getElseBranch());
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visit(Logical expression) {
+        compile(expression.getLeft());
+        line = expression.getOperator().line();
+        if (expression.getOperator().type() == TokenType.AND) {
+            var endJump = emitJump(OpCode.JUMP_IF_FALSE);
+            emitOp(OpCode.POP, -1);
+            compile(expression.getRight());
+            patchJump(endJump);
+        } else {
+            var elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+            var endJump = emitJump(OpCode.JUMP);
+            patchJump(elseJump);
+            emitOp(OpCode.POP, -1);
+            compile(expression.getRight());
+            patchJump(endJump);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Call expression) {
+        var arguments = expression.getArguments();
+
+        if (expression.getCalee() instanceof Get get) {
+            // `object.method(...)` is called directly, without materializing a bound method
+            compile(get.getObject());
+            compileArguments(arguments);
+            line = expression.getParen().line();
+            emitOperandOp(OpCode.INVOKE, makeConstant(get.getName().literal()), -arguments.size());
+            emit(arguments.size());
+            return null;
+        }
+
+        if (expression.getCalee() instanceof Super super_) {
+            var keyword = super_.getKeyword();
+            loadVariable(new Token(TokenType.SELF, Symbols.NONE, null, keyword.line(), keyword.offset()));
+            compileArguments(arguments);
+            loadVariable(keyword);
+            line = expression.getParen().line();
+            emitOperandOp(OpCode.SUPER_INVOKE, makeConstant(super_.getMethod().literal()), -arguments.size() - 1);
+            emit(arguments.size());
+            return null;
+        }
+
+        compile(expression.getCalee());
+        compileArguments(arguments);
+        line = expression.getParen().line();
+        emitOp(OpCode.CALL, -arguments.size());
+        emit(arguments.size());
+        return null;
+    }
+
+    @Override
+    public Void visit(Get expression) {
+        compile(expression.getObject());
+        line = expression.getName().line();
+        emitOperandOp(OpCode.GET_PROPERTY, makeConstant(expression.getName().literal()), 0);
+        return null;
+    }
+
+    @Override
+    public Void visit(Set expression) {
+        compile(expression.getObject());
+        compile(expression.getValue());
+        line = expression.getName().line();
+        emitOperandOp(OpCode.SET_PROPERTY, makeConstant(expression.getName().literal()), -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Self expression) {
+        loadVariable(expression.getKeyword());
+        return null;
+    }
+
+    @Override
+    public Void visit(Super expression) {
+        var keyword = expression.getKeyword();
+        loadVariable(new Token(TokenType.SELF, Symbols.NONE, null, keyword.line(), keyword.offset()));
+        loadVariable(keyword);
+        this.line = expression.getMethod().line();
+        emitOperandOp(OpCode.GET_SUPER, makeConstant(expression.getMethod().literal()), -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(ArrayLiteral expression) {
+        var elements = expression.getElements();
+        for (var element : elements) {
+            compile(element);
+        }
+        if (elements.size() > MAX_OPERAND) {
+            error("Too many elements in an array literal");
+        }
+        emitOperandOp(OpCode.ARRAY, elements.size(), 1 - elements.size());
+        return null;
+    }
+
+    @Override
+    public Void visit(GetIndex expression) {
+        compile(expression.getArray());
+        compile(expression.getIndex());
+        line = expression.getBracket().line();
+        emitOp(OpCode.GET_INDEX, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(SetIndex expression) {
+        compile(expression.getArray());
+        compile(expression.getIndex());
+        compile(expression.getValue());
+        line = expression.getBracket().line();
+        emitOp(OpCode.SET_INDEX, -2);
+        return null;
+    }
+
+    @Override
+    public Void visit(Expr statement) {
+        compile(statement.getExpression());
+        emitOp(OpCode.POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Let statement) {
+        line = statement.getName().line();
+        if (statement.getInitializer() != null) {
+            compile(statement.getInitializer());
+        } else {
+            emitOp(OpCode.UNINITIALIZED, 1);
+        }
+        defineVariable(statement.getName(), statement.getInitializer() == null);
+        return null;
+    }
+
+    @Override
+    public Void visit(Block statement) {
+        beginScope();
+        for (var inner : statement.getStatements()) {
+            compile(inner);
+        }
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visit(If statement) {
+        compile(statement.getCondition());
+        var thenJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emitOp(OpCode.POP, -1);
+        compile(statement.getThenBranch());
+        var elseJump = emitJump(OpCode.JUMP);
+        patchJump(thenJump);
+        // The condition is still on the stack when we jump here
+        adjustStack(1);
+        emitOp(OpCode.POP, -1);
+        statement.getElseBranch().ifPresent(this::compile);
+        patchJump(elseJump);
+        return null;
+    }
+
+    @Override
+    public Void visit(While statement) {
+        var loopStart = chunk().size();
+        compile(statement.getCondition());
+        var exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emitOp(OpCode.POP, -1);
+
+        current.loop = new Loop(current.loop, current.scopeDepth);
+        compile(statement.getBody());
+        emitLoop(loopStart);
+
+        patchJump(exitJump);
+        adjustStack(1);
+        emitOp(OpCode.POP, -1);
+
+        // `break` leaves the loop with the condition already popped
+        for (var breakJump : current.loop.breakJumps) {
+            patchJump(breakJump);
+        }
+        current.loop = current.loop.enclosing;
+        return null;
+    }
+
+    @Override
+    public Void visit(Break statement) {
+        line = statement.getName().line();
+        var loop = current.loop;
+
+        // Discard the locals of the scopes we jump out of, without forgetting them:
+        // the code after `break` still belongs to those scopes.
+        var stackDepth = current.stackDepth;
+        for (int i = current.locals.size() - 1; i >= 0 && current.locals.get(i).depth > loop.scopeDepth; --i) {
+            emitOp(current.locals.get(i).isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP, -1);
+        }
+        loop.breakJumps.add(emitJump(OpCode.JUMP));
+        current.stackDepth = stackDepth;
+        return null;
+    }
+
+    @Override
+    public Void visit(Function statement) {
+        line = statement.getName().line();
+        if (current.scopeDepth > 0) {
+            // Declare the local before compiling the body, so the function can refer to itself
+            addLocal(statement.getName().literal(), false);
+            compileFunction(statement, FunctionKind.FUNCTION);
+        } else {
+            compileFunction(statement, FunctionKind.FUNCTION);
+            defineVariable(statement.getName(), false);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Return statement) {
+        line = statement.getKeyword().line();
+        if (current.kind == FunctionKind.INITIALIZER) {
+            emitOperandOp(OpCode.GET_LOCAL, 0, 1);
+        } else if (statement.getValue().isPresent()) {
+            compile(statement.getValue().get());
+        } else {
+            emitOp(OpCode.NIL, 1);
+        }
+        emitOp(OpCode.RETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Class statement) {
+        var name = statement.getName();
+        line = name.line();
+        emitOperandOp(OpCode.CLASS, makeConstant(name.literal()), 1);
+        defineVariable(name, false);
+
+        var superclass = statement.getSuperclass();
+        if (superclass.isPresent()) {
+            loadVariable(superclass.get().getName());
+            beginScope();
+            addLocal("super", false);
+            loadVariable(name);
+            line = superclass.get().getName().line();
+            emitOp(OpCode.INHERIT, -1);
+        }
+
+        loadVariable(name);
+        for (var method : statement.getMethods()) {
+            line = method.getName().line();
+            var kind = method.getName().literal().equals("init") ? FunctionKind.INITIALIZER : FunctionKind.METHOD;
+            compileFunction(method, kind);
+            emitOperandOp(OpCode.METHOD, makeConstant(method.getName().literal()), -1);
+        }
+        emitOp(OpCode.POP, -1);
+
+        if (superclass.isPresent()) {
+            endScope();
+        }
+        return null;
+    }
+
+    private void compile(Statement statement) {
+        statement.accept(this);
+    }
+
+    private void compile(Expression expression) {
+        expression.accept(this);
+    }
+
+    private void compileArguments(List<Expression> arguments) {
+        for (var argument : arguments) {
+            compile(argument);
+        }
+    }
+
+    private void compileFunction(Function function, FunctionKind kind) {
+        var params = function.getParams();
+        begin(new Prototype(function.getName().literal(), params.size()), kind);
+        beginScope();
+        for (var param : params) {
+            addLocal(param.literal(), false);
+        }
+        current.stackDepth += params.size();
+
+        for (var statement : function.getBody()) {
+            compile(statement);
+        }
+
+        var upvalues = current.upvalues;
+        var prototype = end();
+        emitOperandOp(OpCode.CLOSURE, makeConstant(prototype), 1);
+        for (var upvalue : upvalues) {
+            emit(upvalue.isLocal() ? 1 : 0);
+            emitShort(upvalue.index());
+        }
+    }
+
+    private void begin(Prototype prototype, FunctionKind kind) {
+        current = new FunctionState(current, prototype, kind);
+        // Slot zero holds the receiver in methods and the called function otherwise
+        var isMethod = kind == FunctionKind.METHOD || kind == FunctionKind.INITIALIZER;
+        current.locals.add(new Local(isMethod ? "self" : "", 0, false));
+        current.stackDepth = 1;
+        current.prototype.maxStack = 1;
+    }
+
+    private Prototype end() {
+        if (current.kind == FunctionKind.INITIALIZER) {
+            emitOperandOp(OpCode.GET_LOCAL, 0, 1);
+        } else {
+            emitOp(OpCode.NIL, 1);
+        }
+        emitOp(OpCode.RETURN, -1);
+
+        var prototype = current.prototype;
+        prototype.upvalueCount = current.upvalues.size();
+        prototype.chunk.seal();
+        current = current.enclosing;
+        return prototype;
+    }
+
+    private void beginScope() {
+        current.scopeDepth++;
+    }
+
+    private void endScope() {
+        current.scopeDepth--;
+        var locals = current.locals;
+        while (!locals.isEmpty() && locals.getLast().depth > current.scopeDepth) {
+            emitOp(locals.getLast().isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP, -1);
+            locals.removeLast();
+        }
+    }
+
+    private void addLocal(String name, boolean mayBeUninitialized) {
+        if (current.locals.size() > MAX_OPERAND) {
+            error("Too many local variables in function");
+            return;
+        }
+        current.locals.add(new Local(name, current.scopeDepth, mayBeUninitialized));
+    }
+
+    /**
+     * Binds the value on top of the stack to a new variable.
+     */
+    private void defineVariable(Token name, boolean mayBeUninitialized) {
+        if (current.scopeDepth > 0) {
+            // The value simply stays in its stack slot
+            addLocal(name.literal(), mayBeUninitialized);
+            return;
+        }
+        emitOperandOp(OpCode.DEFINE_GLOBAL, vm.globalIndex(name.literal()), -1);
+    }
+
+    private void loadVariable(Token name) {
+        line = name.line();
+        var local = resolveLocal(current, name.literal());
+        if (local != -1) {
+            emitOperandOp(OpCode.GET_LOCAL, local, 1);
+            if (current.locals.get(local).mayBeUninitialized) {
+                emitOperandOp(OpCode.CHECK_INITIALIZED, makeConstant(name.literal()), 0);
+            }
+            return;
+        }
+
+        var upvalue = resolveUpvalue(current, name.literal());
+        if (upvalue != -1) {
+            emitOperandOp(OpCode.GET_UPVALUE, upvalue, 1);
+            if (current.upvalues.get(upvalue).mayBeUninitialized()) {
+                emitOperandOp(OpCode.CHECK_INITIALIZED, makeConstant(name.literal()), 0);
+            }
+            return;
+        }
+
+        emitOperandOp(OpCode.GET_GLOBAL, vm.globalIndex(name.literal()), 1);
+    }
+
+    private void storeVariable(Token name) {
+        line = name.line();
+        var local = resolveLocal(current, name.literal());
+        if (local != -1) {
+            emitOperandOp(OpCode.SET_LOCAL, local, 0);
+            return;
+        }
+
+        var upvalue = resolveUpvalue(current, name.literal());
+        if (upvalue != -1) {
+            emitOperandOp(OpCode.SET_UPVALUE, upvalue, 0);
+            return;
+        }
+
+        emitOperandOp(OpCode.SET_GLOBAL, vm.globalIndex(name.literal()), 0);
+    }
+
+    private static int resolveLocal(FunctionState function, String name) {
+        for (int i = function.locals.size() - 1; i >= 0; --i) {
+            if (function.locals.get(i).name.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int resolveUpvalue(FunctionState function, String name) {
+        if (function.enclosing == null) {
+            return -1;
+        }
+
+        var local = resolveLocal(function.enclosing, name);
+        if (local != -1) {
+            var captured = function.enclosing.locals.get(local);
+            captured.isCaptured = true;
+            return addUpvalue(function, local, true, captured.mayBeUninitialized);
+        }
+
+        var upvalue = resolveUpvalue(function.enclosing, name);
+        if (upvalue != -1) {
+            var captured = function.enclosing.upvalues.get(upvalue);
+            return addUpvalue(function, upvalue, false, captured.mayBeUninitialized());
+        }
+
+        return -1;
+    }
+
+    private int addUpvalue(FunctionState function, int index, boolean isLocal, boolean mayBeUninitialized) {
+        var upvalues = function.upvalues;
+        for (int i = 0; i < upvalues.size(); ++i) {
+            var upvalue = upvalues.get(i);
+            if (upvalue.index() == index && upvalue.isLocal() == isLocal) {
+                return i;
+            }
+        }
+
+        if (upvalues.size() > MAX_OPERAND) {
+            error("Too many closure variables in function");
+            return 0;
+        }
+        upvalues.add(new UpvalueRef(index, isLocal, mayBeUninitialized));
+        return upvalues.size() - 1;
+    }
+
+    private Chunk chunk() {
+        return current.prototype.chunk;
+    }
+
+    private void emit(int value) {
+        chunk().write(value, line);
+    }
+
+    private void emitShort(int value) {
+        emit((value >> 8) & 0xff);
+        emit(value & 0xff);
+    }
+
+    private void emitOp(byte op, int stackEffect) {
+        emit(op);
+        adjustStack(stackEffect);
+    }
+
+    private void emitOperandOp(byte op, int operand, int stackEffect) {
+        emitOp(op, stackEffect);
+        emitShort(operand);
+    }
+
+    private int emitJump(byte op) {
+        emitOp(op, 0);
+        emitShort(0xffff);
+        return chunk().size() - 2;
+    }
+
+    private void patchJump(int offset) {
+        var jump = chunk().size() - offset - 2;
+        if (jump > MAX_OPERAND) {
+            error("Too much code to jump over");
+        }
+        chunk().patch(offset, (jump >> 8) & 0xff);
+        chunk().patch(offset + 1, jump & 0xff);
+    }
+
+    private void emitLoop(int loopStart) {
+        emitOp(OpCode.LOOP, 0);
+        var offset = chunk().size() - loopStart + 2;
+        if (offset > MAX_OPERAND) {
+            error("Loop body is too large");
+        }
+        emitShort(offset);
+    }
+
+    private void adjustStack(int effect) {
+        current.stackDepth += effect;
+        if (current.stackDepth > current.prototype.maxStack) {
+            current.prototype.maxStack = current.stackDepth;
+        }
+    }
+
+    private int makeConstant(Object value) {
+        var index = chunk().addConstant(value);
+        if (index > MAX_OPERAND) {
+            error("Too many constants in one function");
+            return 0;
+        }
+        return index;
+    }
+
+    private void error(String message) {
+        ErrorReporter.error(line, message);
+        hadError = true;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.rmntim.language.vm;
+
+/**
+ * Instruction set of the VM. Operands follow the opcode byte and are big-endian;
+ * unless noted otherwise, they are 16 bit wide.
+ */
+final class OpCode {
+    static final byte CONSTANT = 0;           // [constant]
+    static final byte NIL = 1;
+    static final byte TRUE = 2;
+    static final byte FALSE = 3;
+    static final byte UNINITIALIZED = 4;      // pushes the marker of a variable declared without a value
+    static final byte POP = 5;
+
+    static final byte GET_LOCAL = 6;          // [slot]
+    static final byte SET_LOCAL = 7;          // [slot]
+    static final byte GET_GLOBAL = 8;         // [global index]
+    static final byte DEFINE_GLOBAL = 9;      // [global index]
+    static final byte SET_GLOBAL = 10;        // [global index]
+    static final byte GET_UPVALUE = 11;       // [upvalue index]
+    static final byte SET_UPVALUE = 12;       // [upvalue index]
+    static final byte CHECK_INITIALIZED = 13; // [name constant]
+
+    static final byte GET_PROPERTY = 14;      // [name constant]
+    static final byte SET_PROPERTY = 15;      // [name constant]
+    static final byte GET_SUPER = 16;         // [name constant]
+
+    static final byte EQUAL = 17;
+    static final byte NOT_EQUAL = 18;
+    static final byte GREATER = 19;
+    static final byte GREATER_EQUAL = 20;
+    static final byte LESS = 21;
+    static final byte LESS_EQUAL = 22;
+    static final byte ADD = 23;
+    static final byte SUBTRACT = 24;
+    static final byte MULTIPLY = 25;
+    static final byte DIVIDE = 26;
+    static final byte NOT = 27;
+    static final byte NEGATE = 28;
+
+    static final byte JUMP = 29;              // [forward offset]
+    static final byte JUMP_IF_FALSE = 30;     // [forward offset], leaves the condition on the stack
+    static final byte LOOP = 31;              // [backward offset]
+
+    static final byte CALL = 32;              // [argument count: 8 bit]
+    static final byte INVOKE = 33;            // [name constant] [argument count: 8 bit]
+    static final byte SUPER_INVOKE = 34;      // [name constant] [argument count: 8 bit]
+    static final byte CLOSURE = 35;           // [function constant] then [is local: 8 bit] [index] per upvalue
+    static final byte CLOSE_UPVALUE = 36;
+    static final byte RETURN = 37;
+
+    static final byte CLASS = 38;             // [name constant]
+    static final byte INHERIT = 39;
+    static final byte METHOD = 40;            // [name constant]
+
+    static final byte ARRAY = 41;             // [element count]
+    static final byte GET_INDEX = 42;
+    static final byte SET_INDEX = 43;
+
+    private OpCode() {
+    }
+}
@@ -0,0 +1,22 @@
+package ru.rmntim.language.vm;
+
+/**
+ * Compiled function body. Closures created at runtime share their prototype.
+ */
+final class Prototype {
+    final String name;
+    final int arity;
+    final Chunk chunk = new Chunk();
+    int upvalueCount = 0;
+    int maxStack = 0;
+
+    Prototype(String name, int arity) {
+        this.name = name;
+        this.arity = arity;
+    }
+
+    @Override
+    public String toString() {
+        return name == null ? "<script>" : "<fn " + name + ">";
+    }
+}
@@ -0,0 +1,17 @@
+package ru.rmntim.language.vm;
+
+/**
+ * A variable captured by a closure. While the variable is still on the stack the upvalue points at its slot,
+ * once the slot goes away the value is moved into the upvalue itself.
+ */
+final class Upvalue {
+    final int slot;
+    Object closed;
+    boolean isOpen = true;
+    Upvalue next;
+
+    Upvalue(int slot, Upvalue next) {
+        this.slot = slot;
+        this.next = next;
+    }
+}
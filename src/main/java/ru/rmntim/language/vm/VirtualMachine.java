@@ -0,0 +1,536 @@
+package ru.rmntim.language.vm;
+
+import ru.rmntim.language.env.Environment;
+import ru.rmntim.language.env.NativeFunction;
+import ru.rmntim.language.env.Natives;
+import ru.rmntim.language.interpreter.LoxArray;
+import ru.rmntim.language.interpreter.RuntimeError;
+import ru.rmntim.language.interpreter.ValueError;
+import ru.rmntim.language.interpreter.Values;
+import ru.rmntim.language.interpreter.statement.Statement;
+import ru.rmntim.language.util.ErrorReporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stack-based bytecode interpreter, an alternative to the tree-walking {@code Interpreter}.
+ * <p>
+ * The VM keeps its globals between {@link #interpret(List)} calls, so it can back the REPL.
+ */
+public class VirtualMachine {
+    private static final int MAX_FRAMES = 1 << 16;
+    private static final Object UNDEFINED = new Object();
+
+    private Object[] stack = new Object[1024];
+    private CallFrame[] frames = new CallFrame[64];
+    private int frameCount = 0;
+    private Upvalue openUpvalues = null;
+
+    // Globals are resolved to indices at compile time, so the VM never looks them up by name
+    private final Map<String, Integer> globalIndices = new HashMap<>();
+    private final List<String> globalNames = new ArrayList<>();
+    private Object[] globalValues = new Object[64];
+
+    public VirtualMachine() {
+        for (int i = 0; i < frames.length; ++i) {
+            frames[i] = new CallFrame();
+        }
+        Natives.create().forEach((name, function) -> globalValues[globalIndex(name)] = function);
+    }
+
+    public void interpret(List<Statement> statements) {
+        var script = Compiler.compile(statements, this);
+        if (script == null) {
+            return;
+        }
+
+        var closure = new Closure(script);
+        stack[0] = closure;
+        try {
+            pushFrame(closure, 0);
+            run();
+        } catch (RuntimeError error) {
+            ErrorReporter.runtimeError(error);
+        } finally {
+            Arrays.fill(stack, null);
+            frameCount = 0;
+            openUpvalues = null;
+        }
+    }
+
+    int globalIndex(String name) {
+        var index = globalIndices.get(name);
+        if (index != null) {
+            return index;
+        }
+
+        index = globalNames.size();
+        globalNames.add(name);
+        globalIndices.put(name, index);
+        if (index == globalValues.length) {
+            globalValues = Arrays.copyOf(globalValues, index * 2);
+        }
+        globalValues[index] = UNDEFINED;
+        return index;
+    }
+
+    private void run() {
+        var frame = frames[frameCount - 1];
+        var stack = this.stack;
+        var code = frame.closure.prototype.chunk.code();
+        var constants = frame.closure.prototype.chunk.constants();
+        var base = frame.base;
+        var ip = frame.ip;
+        var sp = base + 1 + frame.closure.prototype.arity;
+
+        for (; ; ) {
+            switch (code[ip++]) {
+                case OpCode.CONSTANT -> {
+                    stack[sp++] = constants[readShort(code, ip)];
+                    ip += 2;
+                }
+                case OpCode.NIL -> stack[sp++] = null;
+                case OpCode.TRUE -> stack[sp++] = true;
+                case OpCode.FALSE -> stack[sp++] = false;
+                case OpCode.UNINITIALIZED -> stack[sp++] = Environment.UNINITIALIZED;
+                case OpCode.POP -> sp--;
+
+                case OpCode.GET_LOCAL -> {
+                    stack[sp++] = stack[base + readShort(code, ip)];
+                    ip += 2;
+                }
+                case OpCode.SET_LOCAL -> {
+                    stack[base + readShort(code, ip)] = stack[sp - 1];
+                    ip += 2;
+                }
+                case OpCode.GET_GLOBAL -> {
+                    var index = readShort(code, ip);
+                    ip += 2;
+                    var value = globalValues[index];
+                    if (value == UNDEFINED) {
+                        throw error(frame, ip, "Undefined variable '" + globalNames.get(index) + "'");
+                    }
+                    if (value == Environment.UNINITIALIZED) {
+                        throw error(frame, ip, "Uninitialized variable '" + globalNames.get(index) + "'");
+                    }
+                    stack[sp++] = value;
+                }
+                case OpCode.DEFINE_GLOBAL -> {
+                    globalValues[readShort(code, ip)] = stack[--sp];
+                    ip += 2;
+                }
+                case OpCode.SET_GLOBAL -> {
+                    var index = readShort(code, ip);
+                    ip += 2;
+                    if (globalValues[index] == UNDEFINED) {
+                        throw error(frame, ip, "Undefined variable '" + globalNames.get(index) + "'");
+                    }
+                    globalValues[index] = stack[sp - 1];
+                }
+                case OpCode.GET_UPVALUE -> {
+                    var upvalue = frame.closure.upvalues[readShort(code, ip)];
+                    ip += 2;
+                    stack[sp++] = upvalue.isOpen ? stack[upvalue.slot] : upvalue.closed;
+                }
+                case OpCode.SET_UPVALUE -> {
+                    var upvalue = frame.closure.upvalues[readShort(code, ip)];
+                    ip += 2;
+                    if (upvalue.isOpen) {
+                        stack[upvalue.slot] = stack[sp - 1];
+                    } else {
+                        upvalue.closed = stack[sp - 1];
+                    }
+                }
+                case OpCode.CHECK_INITIALIZED -> {
+                    var name = constants[readShort(code, ip)];
+                    ip += 2;
+                    if (stack[sp - 1] == Environment.UNINITIALIZED) {
+                        throw error(frame, ip, "Uninitialized variable '" + name + "'");
+                    }
+                }
+
+                case OpCode.GET_PROPERTY -> {
+                    var name = (String) constants[readShort(code, ip)];
+                    ip += 2;
+                    if (!(stack[sp - 1] instanceof VmInstance instance)) {
+                        throw error(frame, ip, "Only instances are allowed to have properties");
+                    }
+                    var value = instance.fields.get(name);
+                    if (value == null && !instance.fields.containsKey(name)) {
+                        var method = instance.class_.methods.get(name);
+                        if (method == null) {
+                            throw error(frame, ip, "Undefined property '" + name + "'");
+                        }
+                        value = new BoundMethod(instance, method);
+                    }
+                    stack[sp - 1] = value;
+                }
+                case OpCode.SET_PROPERTY -> {
+                    var name = (String) constants[readShort(code, ip)];
+                    ip += 2;
+                    if (!(stack[sp - 2] instanceof VmInstance instance)) {
+                        throw error(frame, ip, "Only instances are allowed to have properties");
+                    }
+                    var value = stack[--sp];
+                    instance.fields.put(name, value);
+                    stack[sp - 1] = value;
+                }
+                case OpCode.GET_SUPER -> {
+                    var name = (String) constants[readShort(code, ip)];
+                    ip += 2;
+                    var superclass = (VmClass) stack[--sp];
+                    var method = superclass.methods.get(name);
+                    if (method == null) {
+                        throw error(frame, ip, "Undefined property '" + name + "'");
+                    }
+                    stack[sp - 1] = new BoundMethod(stack[sp - 1], method);
+                }
+
+                case OpCode.EQUAL -> {
+                    var right = stack[--sp];
+                    stack[sp - 1] = Values.isEqual(stack[sp - 1], right);
+                }
+                case OpCode.NOT_EQUAL -> {
+                    var right = stack[--sp];
+                    stack[sp - 1] = !Values.isEqual(stack[sp - 1], right);
+                }
+                case OpCode.GREATER -> {
+                    if (!(stack[sp - 2] instanceof Double left) || !(stack[sp - 1] instanceof Double right)) {
+                        throw error(frame, ip, "Operand must be a number");
+                    }
+                    stack[--sp - 1] = left > right;
+                }
+                case OpCode.GREATER_EQUAL -> {
+                    if (!(stack[sp - 2] instanceof Double left) || !(stack[sp - 1] instanceof Double right)) {
+                        throw error(frame, ip, "Operand must be a number");
+                    }
+                    stack[--sp - 1] = left >= right;
+                }
+                case OpCode.LESS -> {
+                    if (!(stack[sp - 2] instanceof Double left) || !(stack[sp - 1] instanceof Double right)) {
+                        throw error(frame, ip, "Operand must be a number");
+                    }
+                    stack[--sp - 1] = left < right;
+                }
+                case OpCode.LESS_EQUAL -> {
+                    if (!(stack[sp - 2] instanceof Double left) || !(stack[sp - 1] instanceof Double right)) {
+                        throw error(frame, ip, "Operand must be a number");
+                    }
+                    stack[--sp - 1] = left <= right;
+                }
+                case OpCode.ADD -> {
+                    var sum = Values.add(stack[sp - 2], stack[sp - 1]);
+                    if (sum == null) {
+                        throw error(frame, ip, "Operands must be either strings or numbers");
+                    }
+                    stack[--sp - 1] = sum;
+                }
+                case OpCode.SUBTRACT -> {
+                    if (!(stack[sp - 2] instanceof Double left) || !(stack[sp - 1] instanceof Double right)) {
+                        throw error(frame, ip, "Operand must be a number");
+                    }
+                    stack[--sp - 1] = left - right;
+                }
+                case OpCode.MULTIPLY -> {
+                    if (!(stack[sp - 2] instanceof Double left) || !(stack[sp - 1] instanceof Double right)) {
+                        throw error(frame, ip, "Operand must be a number");
+                    }
+                    stack[--sp - 1] = left * right;
+                }
+                case OpCode.DIVIDE -> {
+                    if (!(stack[sp - 2] instanceof Double left) || !(stack[sp - 1] instanceof Double right)) {
+                        throw error(frame, ip, "Operand must be a number");
+                    }
+                    stack[--sp - 1] = left / right;
+                }
+                case OpCode.NOT -> stack[sp - 1] = !Values.isTruthy(stack[sp - 1]);
+                case OpCode.NEGATE -> {
+                    if (!(stack[sp - 1] instanceof Double value)) {
+                        throw error(frame, ip, "Operand must be a number");
+                    }
+                    stack[sp - 1] = -value;
+                }
+
+                case OpCode.JUMP -> ip += readShort(code, ip) + 2;
+                case OpCode.JUMP_IF_FALSE -> {
+                    if (Values.isTruthy(stack[sp - 1])) {
+                        ip += 2;
+                    } else {
+                        ip += readShort(code, ip) + 2;
+                    }
+                }
+                case OpCode.LOOP -> ip -= readShort(code, ip) - 2;
+
+                case OpCode.CALL, OpCode.INVOKE, OpCode.SUPER_INVOKE -> {
+                    var op = code[ip - 1];
+                    String name = null;
+                    if (op != OpCode.CALL) {
+                        name = (String) constants[readShort(code, ip)];
+                        ip += 2;
+                    }
+                    var argumentCount = code[ip++] & 0xff;
+                    frame.ip = ip;
+
+                    switch (op) {
+                        case OpCode.CALL -> sp = callValue(stack[sp - argumentCount - 1], argumentCount, sp);
+                        case OpCode.INVOKE -> sp = invoke(name, argumentCount, sp);
+                        default -> {
+                            var superclass = (VmClass) stack[--sp];
+                            sp = callClosure(findMethod(superclass, name), argumentCount, sp);
+                        }
+                    }
+
+                    frame = frames[frameCount - 1];
+                    stack = this.stack;
+                    code = frame.closure.prototype.chunk.code();
+                    constants = frame.closure.prototype.chunk.constants();
+                    base = frame.base;
+                    ip = frame.ip;
+                }
+                case OpCode.CLOSURE -> {
+                    var prototype = (Prototype) constants[readShort(code, ip)];
+                    ip += 2;
+                    var closure = new Closure(prototype);
+                    for (int i = 0; i < closure.upvalues.length; ++i) {
+                        var isLocal = code[ip++] != 0;
+                        var index = readShort(code, ip);
+                        ip += 2;
+                        closure.upvalues[i] = isLocal ? captureUpvalue(base + index) : frame.closure.upvalues[index];
+                    }
+                    stack[sp++] = closure;
+                }
+                case OpCode.CLOSE_UPVALUE -> {
+                    closeUpvalues(sp - 1);
+                    sp--;
+                }
+                case OpCode.RETURN -> {
+                    var result = stack[sp - 1];
+                    closeUpvalues(base);
+                    frameCount--;
+                    if (frameCount == 0) {
+                        return;
+                    }
+
+                    // Drop the frame's slots, so the garbage it left behind can be collected
+                    Arrays.fill(stack, base, sp, null);
+                    sp = base;
+                    stack[sp++] = result;
+
+                    frame = frames[frameCount - 1];
+                    code = frame.closure.prototype.chunk.code();
+                    constants = frame.closure.prototype.chunk.constants();
+                    base = frame.base;
+                    ip = frame.ip;
+                }
+
+                case OpCode.CLASS -> {
+                    stack[sp++] = new VmClass((String) constants[readShort(code, ip)]);
+                    ip += 2;
+                }
+                case OpCode.INHERIT -> {
+                    if (!(stack[sp - 2] instanceof VmClass superclass)) {
+                        throw error(frame, ip, "Superclass must be a class");
+                    }
+                    var subclass = (VmClass) stack[--sp];
+                    subclass.methods.putAll(superclass.methods);
+                    subclass.initializer = superclass.initializer;
+                }
+                case OpCode.METHOD -> {
+                    var name = (String) constants[readShort(code, ip)];
+                    ip += 2;
+                    var method = (Closure) stack[--sp];
+                    var class_ = (VmClass) stack[sp - 1];
+                    class_.methods.put(name, method);
+                    if (name.equals("init")) {
+                        class_.initializer = method;
+                    }
+                }
+
+
+                case OpCode.ARRAY -> {
+                    var count = readShort(code, ip);
+                    ip += 2;
+                    var array = new LoxArray(count);
+                    for (int i = sp - count; i < sp; ++i) {
+                        array.push(stack[i]);
+                    }
+                    sp -= count;
+                    stack[sp++] = array;
+                }
+                case OpCode.GET_INDEX -> {
+                    if (!(stack[sp - 2] instanceof LoxArray array)) {
+                        throw error(frame, ip, "Only arrays can be indexed");
+                    }
+                    Object value;
+                    try {
+                        value = array.get(stack[sp - 1]);
+                    } catch (ValueError e) {
+                        throw error(frame, ip, e.getMessage());
+                    }
+                    stack[--sp - 1] = value;
+                }
+                case OpCode.SET_INDEX -> {
+                    if (!(stack[sp - 3] instanceof LoxArray array)) {
+                        throw error(frame, ip, "Only arrays can be indexed");
+                    }
+                    var value = stack[sp - 1];
+                    try {
+                        array.set(stack[sp - 2], value);
+                    } catch (ValueError e) {
+                        throw error(frame, ip, e.getMessage());
+                    }
+                    sp -= 2;
+                    stack[sp - 1] = value;
+                }
+
+                default -> throw new IllegalStateException("Unknown opcode " + code[ip - 1]);
+            }
+        }
+    }
+
+    /**
+     * Calls the callee sitting below its arguments on the stack.
+     *
+     * @return the new stack top
+     */
+    private int callValue(Object callee, int argumentCount, int sp) {
+        if (callee instanceof Closure closure) {
+            return callClosure(closure, argumentCount, sp);
+        }
+
+        if (callee instanceof BoundMethod bound) {
+            stack[sp - argumentCount - 1] = bound.receiver();
+            return callClosure(bound.method(), argumentCount, sp);
+        }
+
+        if (callee instanceof VmClass class_) {
+            stack[sp - argumentCount - 1] = new VmInstance(class_);
+            if (class_.initializer != null) {
+                return callClosure(class_.initializer, argumentCount, sp);
+            }
+            checkArity(0, argumentCount);
+            return sp;
+        }
+
+        if (callee instanceof NativeFunction function) {
+            checkArity(function.arity(), argumentCount);
+            var arguments = Arrays.asList(Arrays.copyOfRange(stack, sp - argumentCount, sp));
+            Object result;
+            try {
+                result = function.call(arguments);
+            } catch (ValueError e) {
+                throw error(e.getMessage());
+            }
+            sp -= argumentCount + 1;
+            Arrays.fill(stack, sp, sp + argumentCount + 1, null);
+            stack[sp++] = result;
+            return sp;
+        }
+
+        throw error("Call to a non-callable object");
+    }
+
+    private int invoke(String name, int argumentCount, int sp) {
+        if (!(stack[sp - argumentCount - 1] instanceof VmInstance instance)) {
+            throw error("Only instances are allowed to have properties");
+        }
+
+        var field = instance.fields.get(name);
+        if (field != null || instance.fields.containsKey(name)) {
+            stack[sp - argumentCount - 1] = field;
+            return callValue(field, argumentCount, sp);
+        }
+
+        return callClosure(findMethod(instance.class_, name), argumentCount, sp);
+    }
+
+    private Closure findMethod(VmClass class_, String name) {
+        var method = class_.methods.get(name);
+        if (method == null) {
+            throw error("Undefined property '" + name + "'");
+        }
+        return method;
+    }
+
+    private int callClosure(Closure closure, int argumentCount, int sp) {
+        checkArity(closure.prototype.arity, argumentCount);
+        pushFrame(closure, sp - argumentCount - 1);
+        return sp;
+    }
+
+    private void checkArity(int arity, int argumentCount) {
+        if (argumentCount != arity) {
+            throw error("Expected " + arity + " arguments but got " + argumentCount);
+        }
+    }
+
+    private void pushFrame(Closure closure, int base) {
+        if (frameCount == frames.length) {
+            if (frameCount == MAX_FRAMES) {
+                throw error("Stack overflow");
+            }
+            var grown = Arrays.copyOf(frames, frameCount * 2);
+            for (int i = frameCount; i < grown.length; ++i) {
+                grown[i] = new CallFrame();
+            }
+            frames = grown;
+        }
+
+        var required = base + closure.prototype.maxStack;
+        if (required > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(required, stack.length * 2));
+        }
+
+        var frame = frames[frameCount++];
+        frame.closure = closure;
+        frame.ip = 0;
+        frame.base = base;
+    }
+
+    private Upvalue captureUpvalue(int slot) {
+        Upvalue previous = null;
+        var upvalue = openUpvalues;
+        while (upvalue != null && upvalue.slot > slot) {
+            previous = upvalue;
+            upvalue = upvalue.next;
+        }
+
+        if (upvalue != null && upvalue.slot == slot) {
+            return upvalue;
+        }
+
+        var created = new Upvalue(slot, upvalue);
+        if (previous == null) {
+            openUpvalues = created;
+        } else {
+            previous.next = created;
+        }
+        return created;
+    }
+
+    private void closeUpvalues(int lastSlot) {
+        while (openUpvalues != null && openUpvalues.slot >= lastSlot) {
+            var upvalue = openUpvalues;
+            upvalue.closed = stack[upvalue.slot];
+            upvalue.isOpen = false;
+            openUpvalues = upvalue.next;
+        }
+    }
+
+    private static int readShort(byte[] code, int offset) {
+        return ((code[offset] & 0xff) << 8) | (code[offset + 1] & 0xff);
+    }
+
+    private RuntimeError error(CallFrame frame, int ip, String message) {
+        return new RuntimeError(frame.closure.prototype.chunk.line(ip - 1), message);
+    }
+
+    private RuntimeError error(String message) {
+        var frame = frames[frameCount - 1];
+        return error(frame, frame.ip, message);
+    }
+}
@@ -0,0 +1,20 @@
+package ru.rmntim.language.vm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+final class VmClass {
+    final String name;
+    // Inherited methods are copied in when the class is created, so lookups never walk the superclass chain
+    final Map<String, Closure> methods = new HashMap<>();
+    Closure initializer;
+
+    VmClass(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,18 @@
+package ru.rmntim.language.vm;
+
+import java.util.HashMap;
+import java.util.Map;
+
+final class VmInstance {
+    final VmClass class_;
+    final Map<String, Object> fields = new HashMap<>();
+
+    VmInstance(VmClass class_) {
+        this.class_ = class_;
+    }
+
+    @Override
+    public String toString() {
+        return class_.name + " instance";
+    }
+}